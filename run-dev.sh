@@ -6,6 +6,7 @@ export DATABASE_DRIVER=org.h2.Driver
 export DATABASE_USERNAME=sa
 export DATABASE_PASSWORD=password
 export DATABASE_PLATFORM=org.hibernate.dialect.H2Dialect
+# Run as SPRING_PROFILES_ACTIVE=file ./run-dev.sh to keep the database in ./data across restarts
 
 # Build the Spring Boot Application using Maven
 mvn clean package
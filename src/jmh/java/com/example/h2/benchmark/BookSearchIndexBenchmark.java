@@ -0,0 +1,82 @@
+package com.example.h2.benchmark;
+
+import com.example.h2.model.Book;
+import com.example.h2.service.BookSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// BookSearchIndex.search on its own, over catalogSize distinct books. Titles and authors come from a small vocabulary,
+// so a single word matches about a tenth of the catalog and a one-letter prefix nearly half of it: the case where
+// ranking, not posting lookup, dominates.
+// Run with: mvn -Pjmh -DskipTests verify -Djmh.includes=BookSearchIndexBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookSearchIndexBenchmark {
+
+    private static final List<String> TITLE_WORDS = List.of(
+            "Silent", "River", "Shadow", "Empire", "Garden", "Winter", "Stone", "Glass", "Crimson", "Harbor",
+            "Ember", "Atlas", "Hollow", "Signal", "Orchard", "Lantern", "Meridian", "Quiet", "Iron", "Paper");
+    private static final List<String> AUTHOR_NAMES = List.of(
+            "Ada", "Bruno", "Chen", "Dara", "Emeka", "Farah", "Goran", "Hana", "Ivo", "Jun",
+            "Abara", "Berg", "Costa", "Dube", "Eriksen", "Fontaine", "Gupta", "Haddad", "Ito", "Jansen");
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"silent", "s", "silent river", "ada berg"})
+    public String query;
+
+    private BookSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void buildIndex() {
+        index = new BookSearchIndex();
+        ReflectionTestUtils.setField(index, "maxExpansions", 64);
+        Random random = new Random(42);
+        List<Book> books = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            Book book = new Book();
+            book.setId(i + 1L);
+            book.setIsbn(String.format("979%010d", i));
+            book.setTitle(pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " " + i);
+            book.setAuthor(pick(random, AUTHOR_NAMES) + " " + pick(random, AUTHOR_NAMES));
+            books.add(book);
+        }
+        index.addAll(books);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits firstPage() {
+        return index.search(query, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public BookSearchIndex.Hits fifthPage() {
+        return index.search(query, 4 * PAGE_SIZE, PAGE_SIZE);
+    }
+
+    private static String pick(Random random, List<String> words) {
+        return words.get(random.nextInt(words.size()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.h2.benchmark;
+
+import com.example.h2.H2Application;
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.response.BookBatchResponse;
+import com.example.h2.response.BookResponse;
+import com.example.h2.service.BookService;
+import com.example.h2.service.BorrowerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Service-layer hot paths against an in-memory H2 catalog of catalogSize books (two copies per ISBN).
+// Run with: mvn -Pjmh -DskipTests verify [-Djmh.catalogSizes=1000] [-Djmh.includes=getAllUniqueBooks]
+// Results are written as JSON to target/jmh-result.json; -Djmh.profiles=no-l2 runs without the second-level cache.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BookServiceBenchmark {
+
+    private static final int SEED_CHUNK_SIZE = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private BorrowerService borrowerService;
+    private long[] bookIds;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(H2Application.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark", "logging.level.root=WARN")
+                .run();
+        bookService = context.getBean(BookService.class);
+        borrowerService = context.getBean(BorrowerService.class);
+
+        bookIds = new long[catalogSize];
+        for (int from = 0; from < catalogSize; from += SEED_CHUNK_SIZE) {
+            List<Book> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + SEED_CHUNK_SIZE, catalogSize); i++) {
+                chunk.add(book(i / 2));
+            }
+            BookBatchResponse response = bookService.saveBooks(chunk).join();
+            for (BookBatchResponse.Item item : response.getItems()) {
+                bookIds[from + item.getIndex()] = item.getId();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class BorrowerState {
+        private Long borrowerId;
+
+        @Setup(Level.Trial)
+        public void registerBorrower(BookServiceBenchmark benchmark) {
+            Borrower borrower = new Borrower();
+            borrower.setName("Benchmark Borrower");
+            borrower.setEmailAddress("benchmark-" + Thread.currentThread().getId() + "@example.com");
+            borrowerId = benchmark.borrowerService.registerBorrower(borrower).join().getId();
+        }
+    }
+
+    @Benchmark
+    public Book saveBookCopy() {
+        return bookService.saveBook(book(randomEdition())).join();
+    }
+
+    @Benchmark
+    public Throwable saveBookRejectsMismatchedEdition() {
+        Book book = book(randomEdition());
+        book.setTitle(book.getTitle() + " (different)");
+        try {
+            bookService.saveBook(book).join();
+            throw new IllegalStateException("Mismatched edition was accepted");
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Benchmark
+    public BookResponse getAllUniqueBooksFirstPage() {
+        return bookService.getAllUniqueBooks(null, BookService.DEFAULT_PAGE_SIZE).join();
+    }
+
+    @Benchmark
+    public BookResponse getAllUniqueBooksRandomPage() {
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(randomBookId()).getBytes(StandardCharsets.UTF_8));
+        return bookService.getAllUniqueBooks(cursor, BookService.DEFAULT_PAGE_SIZE).join();
+    }
+
+    @Benchmark
+    public String borrowAndReturnBook(BorrowerState state) {
+        long bookId = randomBookId();
+        bookService.borrowBook(bookId, state.borrowerId).join();
+        return bookService.returnBook(bookId, state.borrowerId).join();
+    }
+
+    private int randomEdition() {
+        return ThreadLocalRandom.current().nextInt(Math.max(1, catalogSize / 2));
+    }
+
+    private long randomBookId() {
+        return bookIds[ThreadLocalRandom.current().nextInt(bookIds.length)];
+    }
+
+    private static Book book(int edition) {
+        Book book = new Book();
+        book.setIsbn(String.format("978%010d", edition));
+        book.setTitle("Benchmark Title " + edition);
+        book.setAuthor("Benchmark Author " + edition % 1000);
+        return book;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.h2.load;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic synthetic catalog: the same seed always yields the same books and borrowers, so runs against
+// the same catalog size are comparable. Every edition is stored as COPIES_PER_EDITION books.
+public class CatalogGenerator {
+
+    public static final int COPIES_PER_EDITION = 2;
+
+    private static final List<String> TITLE_WORDS = List.of(
+            "Silent", "River", "Shadow", "Empire", "Garden", "Winter", "Stone", "Glass", "Crimson", "Harbor",
+            "Ember", "Atlas", "Hollow", "Signal", "Orchard", "Lantern", "Meridian", "Quiet", "Iron", "Paper");
+    private static final List<String> FIRST_NAMES = List.of(
+            "Ada", "Bruno", "Chen", "Dara", "Emeka", "Farah", "Goran", "Hana", "Ivo", "Jun",
+            "Kaia", "Luis", "Mina", "Nils", "Oona", "Priya", "Quinn", "Rafa", "Sena", "Tomas");
+    private static final List<String> LAST_NAMES = List.of(
+            "Abara", "Berg", "Costa", "Dube", "Eriksen", "Fontaine", "Gupta", "Haddad", "Ito", "Jansen",
+            "Kowalski", "Lindqvist", "Moreau", "Novak", "Okafor", "Petrov", "Quiroga", "Rossi", "Sato", "Tanaka");
+
+    private final long seed;
+
+    public CatalogGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public Map<String, String> book(int index) {
+        int edition = index / COPIES_PER_EDITION;
+        Random random = new Random(seed * 31 + edition);
+        String title = pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " " + edition;
+        String author = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+        return Map.of("title", title, "author", author, "isbn", String.format("979%010d", edition));
+    }
+
+    public Map<String, String> newBook(long sequence) {
+        Random random = new Random(seed * 17 + sequence);
+        return Map.of(
+                "title", pick(random, TITLE_WORDS) + " " + pick(random, TITLE_WORDS) + " New " + sequence,
+                "author", pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES),
+                "isbn", String.format("978%d%06d", seed % 1000, sequence));
+    }
+
+    public Map<String, String> borrower(int index) {
+        Random random = new Random(seed * 13 + index);
+        return Map.of(
+                "name", pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES),
+                "emailAddress", "borrower" + index + "@example.com");
+    }
+
+    private static String pick(Random random, List<String> words) {
+        return words.get(random.nextInt(words.size()));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.h2.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects every response latency per endpoint. Latency is measured from the request's scheduled send time,
+// not the actual one, so a stalled server shows up in the percentiles instead of silently lowering the rate.
+public class LatencyRecorder {
+
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+
+    public void record(String endpoint, long scheduledNanos, int status) {
+        samples.computeIfAbsent(endpoint, e -> new Samples()).add(System.nanoTime() - scheduledNanos, status);
+    }
+
+    public void recordFailure(String endpoint, long scheduledNanos, String reason) {
+        samples.computeIfAbsent(endpoint, e -> new Samples()).add(System.nanoTime() - scheduledNanos, reason);
+    }
+
+    public Map<String, Object> report(double durationSeconds) {
+        Map<String, Object> endpoints = new TreeMap<>();
+        Samples total = new Samples();
+        samples.forEach((endpoint, recorded) -> {
+            endpoints.put(endpoint, recorded.summary(durationSeconds));
+            total.addAll(recorded);
+        });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total", total.summary(durationSeconds));
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    // Latencies are kept per outcome as well, since a fast 429 and a slow 200 averaged together describe neither.
+    private static final class Samples {
+        private final Map<String, Latencies> outcomes = new TreeMap<>();
+
+        synchronized void add(long latencyNanos, int status) {
+            add(latencyNanos, Integer.toString(status));
+        }
+
+        synchronized void add(long latencyNanos, String outcome) {
+            outcomes.computeIfAbsent(outcome, o -> new Latencies()).add(latencyNanos);
+        }
+
+        synchronized void addAll(Samples other) {
+            synchronized (other) {
+                other.outcomes.forEach((outcome, latencies) ->
+                        outcomes.computeIfAbsent(outcome, o -> new Latencies()).addAll(latencies));
+            }
+        }
+
+        synchronized Map<String, Object> summary(double durationSeconds) {
+            Latencies all = new Latencies();
+            Map<String, Long> counts = new TreeMap<>();
+            Map<String, Object> latencyMsByOutcome = new TreeMap<>();
+            outcomes.forEach((outcome, latencies) -> {
+                all.addAll(latencies);
+                counts.put(outcome, (long) latencies.size);
+                latencyMsByOutcome.put(outcome, latencies.percentiles());
+            });
+            long successes = counts.entrySet().stream()
+                    .filter(outcome -> outcome.getKey().startsWith("2"))
+                    .mapToLong(Map.Entry::getValue)
+                    .sum();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", all.size);
+            summary.put("throughputPerSecond", all.size / durationSeconds);
+            summary.put("successes", successes);
+            summary.put("outcomes", counts);
+            summary.put("latencyMs", all.percentiles());
+            summary.put("latencyMsByOutcome", latencyMsByOutcome);
+            return summary;
+        }
+    }
+
+    private static final class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long latencyNanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = latencyNanos;
+        }
+
+        void addAll(Latencies other) {
+            values = Arrays.copyOf(values, Math.max(values.length, size + other.size));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        Map<String, Object> percentiles() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            Map<String, Object> latencyMs = new LinkedHashMap<>();
+            latencyMs.put("p50", percentile(sorted, 0.50));
+            latencyMs.put("p99", percentile(sorted, 0.99));
+            latencyMs.put("p999", percentile(sorted, 0.999));
+            latencyMs.put("max", size == 0 ? 0.0 : sorted[size - 1] / 1_000_000.0);
+            return latencyMs;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.h2.load;
+
+import com.example.h2.H2Application;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop HTTP load generator. Seeds the catalog through the public API, then sends a weighted mix of
+// requests at a fixed rate for a warmup and a measured phase and writes per-endpoint throughput and latency
+// percentiles as JSON. Without load.target the application is started in this JVM on a random port.
+//
+//   mvn -Pload -DskipTests verify -Dload.books=100000 -Dload.rate=500 -Dload.duration-seconds=60
+public class LoadHarness {
+
+    private static final int SEED_CHUNK_SIZE = 10_000;
+    private static final int SEED_CONCURRENCY = 8;
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final Settings settings;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CatalogGenerator generator;
+    private final AtomicLong newBooks = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final List<Long> bookIds = new ArrayList<>();
+    private final List<Long> borrowerIds = new ArrayList<>();
+    private String baseUrl;
+
+    record Settings(String target, int books, int borrowers, int rate, int warmupSeconds, int durationSeconds,
+                    Map<String, Integer> mix, long seed, int maxInFlight, Path report) {
+
+        static Settings fromSystemProperties() {
+            Map<String, Integer> mix = new LinkedHashMap<>();
+            for (String entry : System.getProperty("load.mix", "get-book=50,get-all=20,borrow-return=20,add-book=10").split(",")) {
+                String[] weight = entry.trim().split("=");
+                mix.put(weight[0], Integer.parseInt(weight[1]));
+            }
+            return new Settings(
+                    System.getProperty("load.target", ""),
+                    Integer.getInteger("load.books", 100_000),
+                    Integer.getInteger("load.borrowers", 1_000),
+                    Integer.getInteger("load.rate", 200),
+                    Integer.getInteger("load.warmup-seconds", 10),
+                    Integer.getInteger("load.duration-seconds", 60),
+                    mix,
+                    Long.getLong("load.seed", 42L),
+                    Integer.getInteger("load.max-in-flight", 10_000),
+                    Path.of(System.getProperty("load.report", "target/load-report.json")));
+        }
+    }
+
+    public LoadHarness(Settings settings) {
+        this.settings = settings;
+        this.generator = new CatalogGenerator(settings.seed());
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        ConfigurableApplicationContext application = null;
+        String baseUrl = settings.target();
+        if (baseUrl.isBlank()) {
+            application = new SpringApplicationBuilder(H2Application.class)
+                    .run("--server.port=0", "--logging.level.root=WARN");
+            baseUrl = "http://localhost:" + ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+        }
+        try {
+            new LoadHarness(settings).run(baseUrl);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    public void run(String baseUrl) throws IOException, InterruptedException {
+        this.baseUrl = baseUrl;
+        long seedStart = System.nanoTime();
+        seedBooks();
+        seedBorrowers();
+        System.out.printf("Seeded %d books and %d borrowers in %d ms%n", bookIds.size(), borrowerIds.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+
+        drive(settings.warmupSeconds(), new LatencyRecorder());
+        LatencyRecorder recorder = new LatencyRecorder();
+        drive(settings.durationSeconds(), recorder);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", baseUrl);
+        report.put("settings", settings);
+        report.putAll(recorder.report(settings.durationSeconds()));
+        Files.createDirectories(settings.report().toAbsolutePath().getParent());
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(settings.report().toFile(), report);
+        System.out.println(objectMapper.writeValueAsString(report.get("endpoints")));
+        System.out.println("Report written to " + settings.report().toAbsolutePath());
+    }
+
+    private void seedBooks() throws IOException, InterruptedException {
+        for (int from = 0; from < settings.books(); from += SEED_CHUNK_SIZE) {
+            StringBuilder ndjson = new StringBuilder();
+            for (int i = from; i < Math.min(from + SEED_CHUNK_SIZE, settings.books()); i++) {
+                ndjson.append(objectMapper.writeValueAsString(generator.book(i))).append('\n');
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/books/batch"))
+                    .header("Content-Type", NDJSON)
+                    .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString()))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            for (JsonNode item : data(response).path("items")) {
+                if (item.hasNonNull("id")) {
+                    bookIds.add(item.get("id").asLong());
+                }
+            }
+        }
+    }
+
+    // In small waves, so seeding stays below the server's minimum write concurrency and is never shed with a 429.
+    private void seedBorrowers() {
+        for (int from = 0; from < settings.borrowers(); from += SEED_CONCURRENCY) {
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = from; i < Math.min(from + SEED_CONCURRENCY, settings.borrowers()); i++) {
+                responses.add(client.sendAsync(postJson("/borrower", generator.borrower(i)), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                borrowerIds.add(data(response.join()).get("id").asLong());
+            }
+        }
+    }
+
+    // Requests are scheduled on a fixed timeline regardless of how fast earlier ones complete.
+    private void drive(int seconds, LatencyRecorder recorder) throws InterruptedException {
+        int totalWeight = settings.mix().values().stream().mapToInt(Integer::intValue).sum();
+        long interval = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long sent = 0; ; sent++) {
+            long scheduled = start + sent * interval;
+            if (scheduled >= end) {
+                break;
+            }
+            long delay = scheduled - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            String endpoint = pick(totalWeight);
+            if (inFlight.get() >= settings.maxInFlight()) {
+                recorder.recordFailure(endpoint, scheduled, "dropped");
+                continue;
+            }
+            fire(endpoint, scheduled, recorder);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void fire(String endpoint, long scheduled, LatencyRecorder recorder) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (endpoint) {
+            case "get-book" -> send(endpoint, HttpRequest.newBuilder(uri("/books/" + randomBookId())).GET().build(), scheduled, recorder);
+            case "get-all" -> send(endpoint, HttpRequest.newBuilder(uri("/books/all?cursor=" + cursor(randomBookId()))).GET().build(), scheduled, recorder);
+            case "get-borrower" -> send(endpoint, HttpRequest.newBuilder(uri("/borrower/" + randomBorrowerId())).GET().build(), scheduled, recorder);
+            case "add-book" -> send(endpoint, postJson("/books", generator.newBook(newBooks.incrementAndGet())), scheduled, recorder);
+            case "borrow-return" -> {
+                long bookId = randomBookId();
+                long borrowerId = borrowerIds.get(random.nextInt(borrowerIds.size()));
+                send("borrow", post("/books/" + bookId + "/borrow/" + borrowerId), scheduled, recorder)
+                        .thenRun(() -> send("return", post("/books/" + bookId + "/return/" + borrowerId), System.nanoTime(), recorder));
+            }
+            default -> throw new IllegalArgumentException("Unknown endpoint in load.mix: " + endpoint);
+        }
+    }
+
+    private CompletableFuture<Void> send(String endpoint, HttpRequest request, long scheduled, LatencyRecorder recorder) {
+        inFlight.incrementAndGet();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        recorder.recordFailure(endpoint, scheduled, error.getClass().getSimpleName());
+                    } else {
+                        recorder.record(endpoint, scheduled, response.statusCode());
+                    }
+                    inFlight.decrementAndGet();
+                    return null;
+                });
+    }
+
+    private String pick(int totalWeight) {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<String, Integer> entry : settings.mix().entrySet()) {
+            ticket -= entry.getValue();
+            if (ticket < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("load.mix weights must be positive");
+    }
+
+    private long randomBookId() {
+        return bookIds.get(ThreadLocalRandom.current().nextInt(bookIds.size()));
+    }
+
+    private long randomBorrowerId() {
+        return borrowerIds.get(ThreadLocalRandom.current().nextInt(borrowerIds.size()));
+    }
+
+    private static String cursor(long afterId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(afterId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HttpRequest post(String path) {
+        return HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest postJson(String path, Object body) {
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private JsonNode data(HttpResponse<String> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Seeding failed with HTTP " + response.statusCode() + ": " + response.body());
+        }
+        try {
+            return objectMapper.readTree(response.body()).path("data");
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable response: " + response.body(), e);
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+}
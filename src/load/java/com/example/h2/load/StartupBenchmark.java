@@ -0,0 +1,164 @@
+package com.example.h2.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Time to first request of a cold JVM: the executable jar as the default build produces it, the same jar with the
+// fast-start Spring profile, and the fast-start layout (unpacked jar, Spring AOT and the CDS archive of the training
+// run) with that profile. The middle variant separates what the profile saves from what AOT and CDS save. Each run
+// starts a fresh process on a free port and measures from launch until GET /books/all answers 200. Variants
+// alternate run by run, after one untimed run each to warm the file system cache.
+//
+//   mvn -Pfast-start -DskipTests verify -Dstartup.runs=10
+public class StartupBenchmark {
+
+    private static final String FIRST_REQUEST = "/books/all?size=1";
+    private static final long POLL_INTERVAL_MS = 10;
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(3);
+
+    private final Settings settings;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    record Settings(Path jar, Path fastStartDir, int runs, Path report) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Path.of(System.getProperty("startup.jar", "target/h2-0.0.1-SNAPSHOT.jar")),
+                    Path.of(System.getProperty("startup.fast-start-dir", "target/fast-start")),
+                    Integer.getInteger("startup.runs", 5),
+                    Path.of(System.getProperty("startup.report", "target/startup-report.json")));
+        }
+    }
+
+    record Variant(String name, Path directory, List<String> arguments) {}
+
+    public StartupBenchmark(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark(Settings.fromSystemProperties()).run();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        String jarName = settings.jar().getFileName().toString();
+        List<Variant> variants = List.of(
+                new Variant("jar", settings.jar().toAbsolutePath().getParent(), List.of("-jar", jarName)),
+                new Variant("jar-profile", settings.jar().toAbsolutePath().getParent(), List.of(
+                        "-Dspring.profiles.active=fast-start",
+                        "-jar", jarName)),
+                new Variant("fast-start", settings.fastStartDir().toAbsolutePath(), List.of(
+                        "-XX:SharedArchiveFile=application.jsa",
+                        "-Dspring.aot.enabled=true",
+                        "-Dspring.profiles.active=fast-start",
+                        "-jar", jarName)));
+
+        Map<String, List<Long>> timings = new LinkedHashMap<>();
+        for (Variant variant : variants) {
+            timeToFirstRequest(variant);
+            timings.put(variant.name(), new ArrayList<>());
+        }
+        for (int run = 0; run < settings.runs(); run++) {
+            for (Variant variant : variants) {
+                long millis = timeToFirstRequest(variant);
+                timings.get(variant.name()).add(millis);
+                System.out.printf("%-12s run %d: %d ms%n", variant.name(), run + 1, millis);
+            }
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        timings.forEach((name, runs) -> {
+            List<Long> sorted = runs.stream().sorted().toList();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("runsMs", runs);
+            result.put("minMs", sorted.get(0));
+            result.put("medianMs", sorted.get(sorted.size() / 2));
+            result.put("maxMs", sorted.get(sorted.size() - 1));
+            results.put(name, result);
+            System.out.printf("%-12s median %d ms, min %d ms%n", name, sorted.get(sorted.size() / 2), sorted.get(0));
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("firstRequest", FIRST_REQUEST);
+        report.put("timeToFirstRequest", results);
+        Files.createDirectories(settings.report().toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(settings.report().toFile(), report);
+        System.out.println("Report written to " + settings.report().toAbsolutePath());
+    }
+
+    private long timeToFirstRequest(Variant variant) throws IOException, InterruptedException {
+        int port = freePort();
+        Path journal = Files.createTempDirectory("startup-journal");
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(variant.arguments());
+        command.add("--server.port=" + port);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(variant.directory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(settings.report().resolveSibling("startup-" + variant.name() + ".log").toFile());
+        builder.environment().put("LOAN_JOURNAL_DIR", journal.toString());
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + FIRST_REQUEST))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(String.format("%s exited with %d before serving, see %s",
+                            variant.name(), process.exitValue(), builder.redirectOutput().file()));
+                }
+                if (System.nanoTime() - start > START_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException(variant.name() + " did not serve within " + START_TIMEOUT);
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // Not listening yet.
+                }
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            try (Stream<Path> files = Files.walk(journal)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
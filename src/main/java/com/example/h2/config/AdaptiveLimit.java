@@ -0,0 +1,95 @@
+package com.example.h2.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrency limit for one group of endpoints, adjusted from observed latency. A request that finishes within the
+// latency target while at least half of the limit is in use raises the limit by one. A slower one cuts it in
+// proportion to how far it missed the target (limit * target / latency), by at least a tenth and at most a half.
+// Only requests admitted after the previous cut can cut again, so the slow requests already running when the limit
+// came down do not pile cut upon cut, while an overload that persists is answered within one request's latency
+// rather than one cut per interval. Requests over the limit are turned away at once instead of queueing.
+public class AdaptiveLimit implements MeterBinder {
+
+    private static final double MIN_BACKOFF_RATIO = 0.5;
+    private static final double MAX_BACKOFF_RATIO = 0.9;
+
+    private final String group;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+    private long lastDecrease;
+    private boolean decreased;
+
+    public AdaptiveLimit(String group, int initialLimit, int minLimit, int maxLimit, Duration latencyTarget) {
+        this.group = group;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetNanos = latencyTarget.toNanos();
+        this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos) {
+        int running = inFlight.getAndDecrement();
+        adjust(latencyNanos, running, System.nanoTime());
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized void adjust(long latencyNanos, int running, long now) {
+        if (latencyNanos > targetNanos) {
+            if (!decreased || now - latencyNanos - lastDecrease >= 0) {
+                double ratio = Math.max(MIN_BACKOFF_RATIO, Math.min(MAX_BACKOFF_RATIO, (double) targetNanos / latencyNanos));
+                limit = Math.max(minLimit, (int) (limit * ratio));
+                lastDecrease = now;
+                decreased = true;
+            }
+        } else if (running * 2 >= limit && limit < maxLimit) {
+            limit++;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("library.admission.limit", this, AdaptiveLimit::getLimit)
+                .tag("group", group)
+                .description("Current concurrency limit")
+                .register(registry);
+        Gauge.builder("library.admission.in.flight", this, AdaptiveLimit::getInFlight)
+                .tag("group", group)
+                .description("Admitted requests that have not completed")
+                .register(registry);
+        FunctionCounter.builder("library.admission.rejected", rejected, AtomicLong::get)
+                .tag("group", group)
+                .description("Requests answered with 429 because the limit was reached")
+                .register(registry);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.h2.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+// Admission control for the API: reads and writes each get their own adaptive concurrency limit, so a flood of
+// catalog reads cannot take the capacity that borrows and returns need. The change feed and the NDJSON exports are
+// not limited; their streams stay open for as long as the client reads.
+@Configuration
+@ConditionalOnProperty(name = "app.admission.enabled", havingValue = "true")
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    public static final String READ_LIMIT = "readLimit";
+    public static final String WRITE_LIMIT = "writeLimit";
+
+    @Value("${app.admission.read.initial-limit:200}")
+    private int readInitialLimit;
+
+    @Value("${app.admission.read.min-limit:20}")
+    private int readMinLimit;
+
+    @Value("${app.admission.read.max-limit:1000}")
+    private int readMaxLimit;
+
+    @Value("${app.admission.read.latency-target:500ms}")
+    private Duration readLatencyTarget;
+
+    @Value("${app.admission.write.initial-limit:100}")
+    private int writeInitialLimit;
+
+    @Value("${app.admission.write.min-limit:10}")
+    private int writeMinLimit;
+
+    @Value("${app.admission.write.max-limit:500}")
+    private int writeMaxLimit;
+
+    @Value("${app.admission.write.latency-target:1s}")
+    private Duration writeLatencyTarget;
+
+    @Value("${app.admission.retry-after:1s}")
+    private Duration retryAfter;
+
+    @Bean(name = READ_LIMIT)
+    public AdaptiveLimit readLimit() {
+        return new AdaptiveLimit("read", readInitialLimit, readMinLimit, readMaxLimit, readLatencyTarget);
+    }
+
+    @Bean(name = WRITE_LIMIT)
+    public AdaptiveLimit writeLimit() {
+        return new AdaptiveLimit("write", writeInitialLimit, writeMinLimit, writeMaxLimit, writeLatencyTarget);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AdmissionInterceptor(readLimit(), writeLimit(), Math.max(1, retryAfter.toSeconds())))
+                .excludePathPatterns("/events", "/error", "/swagger-ui/**", "/v3/api-docs/**");
+    }
+}
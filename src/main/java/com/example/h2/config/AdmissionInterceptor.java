@@ -0,0 +1,64 @@
+package com.example.h2.config;
+
+import com.example.h2.exception.TooManyRequestsException;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Collection;
+
+// Takes a permit when a request arrives and gives it back when the response is complete. For the asynchronous
+// handlers that is after the async dispatch, so the permit covers the time the request spends in the service.
+// Handlers that stream NDJSON (/books/export, /reactive/books/all) are let through: they run for as long as the
+// client reads, so a permit would be held for the whole stream and its latency would cut the limit for everyone.
+class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = AdmissionInterceptor.class.getName() + ".permit";
+
+    private final AdaptiveLimit readLimit;
+    private final AdaptiveLimit writeLimit;
+    private final long retryAfterSeconds;
+
+    private record Permit(AdaptiveLimit limit, long startNanos) {}
+
+    AdmissionInterceptor(AdaptiveLimit readLimit, AdaptiveLimit writeLimit, long retryAfterSeconds) {
+        this.readLimit = readLimit;
+        this.writeLimit = writeLimit;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        if (streams(request)) {
+            return true;
+        }
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        AdaptiveLimit limit = read ? readLimit : writeLimit;
+        if (!limit.tryAcquire()) {
+            throw new TooManyRequestsException(String.format("Too many concurrent %s requests, please retry later.",
+                    read ? "read" : "write"), retryAfterSeconds);
+        }
+        request.setAttribute(PERMIT, new Permit(limit, System.nanoTime()));
+        return true;
+    }
+
+    private static boolean streams(HttpServletRequest request) {
+        return request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE) instanceof Collection<?> types
+                && types.contains(MediaType.APPLICATION_NDJSON);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT) instanceof Permit permit) {
+            request.removeAttribute(PERMIT);
+            permit.limit().release(System.nanoTime() - permit.startNanos());
+        }
+    }
+}
@@ -1,9 +1,90 @@
 package com.example.h2.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 @EnableAsync
-public class AsyncConfig {
+public class AsyncConfig implements WebMvcConfigurer {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    public static final String SERVICE_EXECUTOR = "serviceExecutor";
+    public static final String MVC_EXECUTOR = "mvcExecutor";
+
+    @Value("${app.executor.virtual-threads:true}")
+    private boolean virtualThreads;
+
+    @Value("${app.executor.max-concurrency:1000}")
+    private int maxConcurrency;
+
+    @Value("${app.executor.core-size:16}")
+    private int coreSize;
+
+    @Value("${app.executor.max-size:64}")
+    private int maxSize;
+
+    @Value("${app.executor.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${app.executor.mvc-size:16}")
+    private int mvcSize;
+
+    @Value("${app.executor.mvc-queue-capacity:1000}")
+    private int mvcQueueCapacity;
+
+    @Bean
+    public ServiceExecutorMetrics serviceExecutorMetrics() {
+        return new ServiceExecutorMetrics(SERVICE_EXECUTOR);
+    }
+
+    @Bean(name = SERVICE_EXECUTOR)
+    public AsyncTaskExecutor serviceExecutor(ServiceExecutorMetrics metrics) {
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            // Virtual threads are cheap to block on JDBC, so there is no pool or queue; the concurrency
+            // limit only caps how many service calls can hold a database connection request at once.
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("service-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(maxConcurrency);
+            executor.setTaskDecorator(metrics);
+            logger.info("Service executor uses virtual threads, concurrency limit {}", maxConcurrency);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("service-");
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setTaskDecorator(metrics);
+        executor.setRejectedExecutionHandler(metrics);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        logger.info("Service executor uses a platform thread pool, core {}, max {}, queue {}", coreSize, maxSize, queueCapacity);
+        return executor;
+    }
+
+    // Writes the items of streamed reactive responses (NDJSON from /reactive/books/all). Without it MVC falls back
+    // to a SimpleAsyncTaskExecutor, which starts a new thread for every task, however many are running.
+    @Bean(name = MVC_EXECUTOR)
+    public ThreadPoolTaskExecutor mvcExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("mvc-");
+        executor.setCorePoolSize(mvcSize);
+        executor.setMaxPoolSize(mvcSize);
+        executor.setQueueCapacity(mvcQueueCapacity);
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcExecutor());
+    }
 }
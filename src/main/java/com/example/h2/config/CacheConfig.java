@@ -0,0 +1,13 @@
+package com.example.h2.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// Caches are Caffeine-backed and declared in application.properties (spring.cache.*) so that
+// Actuator binds hit/miss/eviction metrics for them at startup.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String BOOKS_CACHE = "books";
+    public static final String BORROWERS_CACHE = "borrowers";
+}
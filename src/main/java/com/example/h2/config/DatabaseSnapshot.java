@@ -0,0 +1,88 @@
+package com.example.h2.config;
+
+import jakarta.annotation.PreDestroy;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Optional H2 snapshot at app.snapshot.path (a zipped SQL script). An empty database is restored from it before
+// the migrations run, so a restart does not have to re-import the catalog, and the snapshot is rewritten on a
+// graceful shutdown. Mostly useful for the in-memory database; a file database survives restarts on its own.
+@Component
+public class DatabaseSnapshot implements FlywayMigrationStrategy {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseSnapshot.class);
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.snapshot.path:}")
+    private String path;
+
+    @Value("${app.snapshot.restore-on-startup:true}")
+    private boolean restoreOnStartup;
+
+    @Value("${app.snapshot.save-on-shutdown:true}")
+    private boolean saveOnShutdown;
+
+    @Override
+    public void migrate(Flyway flyway) {
+        if (restoreOnStartup && !path.isBlank() && Files.isRegularFile(Path.of(path))) {
+            restoreIfEmpty();
+        }
+        flyway.migrate();
+    }
+
+    @PreDestroy
+    public void save() {
+        if (!saveOnShutdown || path.isBlank()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Path target = Path.of(path).toAbsolutePath();
+        Path partial = target.resolveSibling(target.getFileName() + ".partial");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            Files.createDirectories(target.getParent());
+            statement.execute("SCRIPT TO " + literal(partial) + " COMPRESSION ZIP");
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Wrote database snapshot {} ({} bytes) in {} ms", target, Files.size(target), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.error("Failed to write database snapshot {}", target, e);
+        }
+    }
+
+    private void restoreIfEmpty() {
+        long start = System.nanoTime();
+        Path source = Path.of(path).toAbsolutePath();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet tables = statement.executeQuery(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC'")) {
+                tables.next();
+                if (tables.getLong(1) > 0) {
+                    logger.info("Database is not empty, not restoring snapshot {}", source);
+                    return;
+                }
+            }
+            statement.execute("RUNSCRIPT FROM " + literal(source) + " COMPRESSION ZIP");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to restore database snapshot " + source, e);
+        }
+        logger.info("Restored database snapshot {} in {} ms", source, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String literal(Path file) {
+        return "'" + file.toString().replace("'", "''") + "'";
+    }
+}
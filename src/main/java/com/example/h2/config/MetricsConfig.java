@@ -0,0 +1,17 @@
+package com.example.h2.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Backs @Timed on the service classes. Methods returning a CompletableFuture are timed until the future completes.
+@Configuration
+public class MetricsConfig {
+    public static final String SERVICE_TIMER = "library.service";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
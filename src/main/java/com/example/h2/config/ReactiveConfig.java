@@ -0,0 +1,80 @@
+package com.example.h2.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+// R2DBC access for the reactive read endpoints, next to the JPA DataSource that still owns all writes.
+// Without app.reactive.url the connection factory opens the same H2 database as spring.datasource.url.
+// The pool is deliberately not a ConnectionFactory bean: Boot would take that as a reason to skip the DataSource.
+@Configuration
+@ConditionalOnProperty(name = "app.reactive.enabled", havingValue = "true")
+public class ReactiveConfig implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveConfig.class);
+
+    private static final String H2_JDBC_PREFIX = "jdbc:h2:";
+    private static final String POOL_NAME = "reactive";
+
+    @Value("${app.reactive.url:}")
+    private String url;
+
+    @Value("${spring.datasource.url}")
+    private String jdbcUrl;
+
+    @Value("${spring.datasource.username:}")
+    private String username;
+
+    @Value("${spring.datasource.password:}")
+    private String password;
+
+    @Value("${app.reactive.pool-size:20}")
+    private int poolSize;
+
+    private ConnectionPool pool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(MeterRegistry meterRegistry) {
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory())
+                .name(POOL_NAME)
+                .maxSize(poolSize)
+                .build());
+        new ConnectionPoolMetrics(pool, POOL_NAME, Tags.empty()).bindTo(meterRegistry);
+        logger.info("Reactive reads use an R2DBC pool of {} connections", poolSize);
+        return DatabaseClient.create(pool);
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+
+    private ConnectionFactory connectionFactory() {
+        if (!url.isBlank()) {
+            return ConnectionFactories.get(url);
+        }
+        if (!jdbcUrl.startsWith(H2_JDBC_PREFIX)) {
+            throw new IllegalStateException("app.reactive.url must be set when spring.datasource.url is not an H2 URL");
+        }
+        return new H2ConnectionFactory(H2ConnectionConfiguration.builder()
+                .url(jdbcUrl.substring(H2_JDBC_PREFIX.length()))
+                .username(username)
+                .password(password)
+                .build());
+    }
+}
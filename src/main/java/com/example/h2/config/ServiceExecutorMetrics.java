@@ -0,0 +1,92 @@
+package com.example.h2.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tracks saturation of the service executor the same way for the virtual-thread and the platform-pool variant:
+// tasks count as queued from submission until a thread picks them up, then as active until they finish, and the
+// time in between is recorded as their wait. Only the platform pool rejects tasks, once its queue is full; with
+// virtual threads a submission beyond the concurrency limit blocks instead, which shows up as wait time.
+public class ServiceExecutorMetrics implements TaskDecorator, RejectedExecutionHandler, MeterBinder {
+
+    private final String executorName;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile Timer wait;
+
+    public ServiceExecutorMetrics(String executorName) {
+        this.executorName = executorName;
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        queued.incrementAndGet();
+        long submitted = System.nanoTime();
+        return () -> {
+            queued.decrementAndGet();
+            Timer timer = wait;
+            if (timer != null) {
+                timer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            }
+            active.incrementAndGet();
+            try {
+                runnable.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        };
+    }
+
+    @Override
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+        throw new RejectedExecutionException("Executor " + executorName + " is saturated: "
+                + executor.getActiveCount() + " active, " + executor.getQueue().size() + " queued");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("service.executor.queued", queued, AtomicInteger::get)
+                .description("Tasks submitted to the service executor that have not started yet")
+                .tag("name", executorName)
+                .register(registry);
+        Gauge.builder("service.executor.active", active, AtomicInteger::get)
+                .description("Tasks currently running on the service executor")
+                .tag("name", executorName)
+                .register(registry);
+        FunctionCounter.builder("service.executor.rejected", rejected, AtomicLong::get)
+                .description("Tasks rejected because the platform-thread pool and its queue were full")
+                .tag("name", executorName)
+                .register(registry);
+        wait = Timer.builder("service.executor.wait")
+                .description("Time from submission until a task starts: queued in the pool, or waiting for a "
+                        + "concurrency permit with virtual threads")
+                .tag("name", executorName)
+                .register(registry);
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -1,25 +1,53 @@
 package com.example.h2.controller;
 
 import com.example.h2.response.ApiResponse;
+import com.example.h2.response.BookBatchResponse;
 import com.example.h2.response.BookResponse;
+import com.example.h2.exception.BadRequestException;
 import com.example.h2.exception.NotFoundException;
 import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
 import com.example.h2.model.EntityType;
+import com.example.h2.repository.BookRepository;
 import com.example.h2.service.BookService;
+import com.example.h2.service.CatalogSnapshots;
+import com.example.h2.service.CatalogVersion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/books")
 public class BookController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private BookService bookService;
 
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping
     public CompletableFuture<ResponseEntity<ApiResponse<Book>>> addBook(@RequestBody Book book) {
         return bookService.saveBook(book)
@@ -28,12 +56,28 @@ public class BookController {
                 .thenApply(response -> new ResponseEntity<>(response, HttpStatus.CREATED));
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public CompletableFuture<ResponseEntity<ApiResponse<BookBatchResponse>>> addBooks(InputStream body) {
+        // Accepts either a JSON array or newline-delimited JSON objects; the reader handles both.
+        List<Book> books;
+        try (MappingIterator<Book> iterator = objectMapper.readerFor(Book.class).readValues(body)) {
+            books = iterator.readAll();
+        } catch (IOException e) {
+            throw new BadRequestException("Malformed book batch: " + e.getMessage());
+        }
+        return bookService.saveBooks(books)
+                .thenApply(result ->
+                        new ApiResponse<>(HttpStatus.OK.value(),HttpStatus.OK.getReasonPhrase(), result))
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
+    }
+
     @GetMapping("/{id}")
     public CompletableFuture<ResponseEntity<ApiResponse<Book>>> getBook(@PathVariable Long id) {
+        // A matching If-None-Match is answered with 304 before the body is written; cached books need no query.
         return bookService.getBook(id)
                 .thenApply(bookOpt -> bookOpt
-                        .map(book -> new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), book))
-                        .map(response -> new ResponseEntity<>(response, HttpStatus.OK))
+                        .map(book -> ResponseEntity.ok().eTag(EntityTags.of(book))
+                                .body(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), book)))
                         .orElseThrow(() -> new NotFoundException(EntityType.BOOK, id)));
     }
 
@@ -59,12 +103,86 @@ public class BookController {
                 .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
     }
 
-    @GetMapping("/all")
-    public CompletableFuture<ResponseEntity<ApiResponse<BookResponse>>> getAllUniqueBooks() {
-        return bookService.getAllUniqueBooks()
+    @GetMapping("/{id}/borrowers")
+    public CompletableFuture<ResponseEntity<ApiResponse<List<Borrower>>>> getBorrowersOfBook(@PathVariable Long id) {
+        return bookService.getBorrowersOfBook(id)
+                .thenApply(borrowers ->
+                        new ApiResponse<>(HttpStatus.OK.value(),HttpStatus.OK.getReasonPhrase(), borrowers))
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
+    }
+
+    // Pages are served from pre-encoded snapshots and carry the catalog version as ETag, so an unchanged catalog
+    // is answered with 304 without touching the snapshots; checkNotModified has then already written the status
+    // and the ETag header. Clients accepting gzip get the "-gzip" tag whichever body their page has, so each tag
+    // still names exactly one representation and a 304 can be decided before the snapshot is loaded.
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> getAllUniqueBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int size,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) {
+        long version = catalogVersion.current();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = catalogVersion.etag(version, gzip);
+        if (request.checkNotModified(etag)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return catalogSnapshots.page(version, cursor, size)
+                .thenApply(snapshot -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .eTag(etag)
+                            .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                            .contentType(MediaType.APPLICATION_JSON);
+                    if (gzip && snapshot.gzip() != null) {
+                        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.gzip());
+                    }
+                    return response.body(snapshot.json());
+                });
+    }
+
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<ApiResponse<BookResponse>>> searchBooks(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int size) {
+        return bookService.searchBooks(q, cursor, size)
                 .thenApply(books ->
                         new ApiResponse<>(HttpStatus.OK.value(),HttpStatus.OK.getReasonPhrase(), books))
                 .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
     }
-}
 
+    // Written on the request thread straight from the database cursor: the export can outlive the async
+    // request timeout, and each row is flushed to the client in fetch-size chunks as it is read.
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public void exportBooks(HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            long[] written = {0};
+            bookService.exportBooks(book -> {
+                try {
+                    generator.writeObject(book);
+                    generator.writeRaw('\n');
+                    if (++written[0] % BookRepository.EXPORT_FETCH_SIZE == 1) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -4,12 +4,14 @@ import com.example.h2.response.ApiResponse;
 import com.example.h2.exception.NotFoundException;
 import com.example.h2.model.Borrower;
 import com.example.h2.model.EntityType;
+import com.example.h2.response.LoanBatchResponse;
 import com.example.h2.service.BorrowerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 
@@ -36,11 +38,27 @@ public class BorrowerController {
                 .thenApply(ResponseEntity::ok);
     }
 
+    @PostMapping("/{id}/loans")
+    public CompletableFuture<ResponseEntity<ApiResponse<LoanBatchResponse>>> borrowBooks(@PathVariable Long id, @RequestBody List<Long> bookIds) {
+        return borrowerService.borrowBooks(id, bookIds)
+                .thenApply(result ->
+                        new ApiResponse<>(HttpStatus.OK.value(),HttpStatus.OK.getReasonPhrase(), result))
+                .thenApply(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}/loans")
+    public CompletableFuture<ResponseEntity<ApiResponse<LoanBatchResponse>>> returnBooks(@PathVariable Long id, @RequestBody List<Long> bookIds) {
+        return borrowerService.returnBooks(id, bookIds)
+                .thenApply(result ->
+                        new ApiResponse<>(HttpStatus.OK.value(),HttpStatus.OK.getReasonPhrase(), result))
+                .thenApply(ResponseEntity::ok);
+    }
+
     @GetMapping("/{id}")
     public CompletableFuture<ResponseEntity<ApiResponse<Borrower>>> getBorrowerById(@PathVariable Long id) {
         return borrowerService.getBorrowerById(id)
-                .thenApply(borrowerOpt -> borrowerOpt.map(borrower -> new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), borrower))
-                        .map(response -> new ResponseEntity<>(response, HttpStatus.OK))
+                .thenApply(borrowerOpt -> borrowerOpt.map(borrower -> ResponseEntity.ok().eTag(EntityTags.of(borrower))
+                                .body(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), borrower)))
                         .orElseThrow(() -> new NotFoundException(EntityType.BORROWER, id)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.example.h2.controller;
+
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+
+// Strong ETags for single entities: the id plus the optimistic-lock version, which changes with every update.
+final class EntityTags {
+
+    private EntityTags() {}
+
+    static String of(Book book) {
+        return "\"book-" + book.getId() + "-" + book.getVersion() + "\"";
+    }
+
+    static String of(Borrower borrower) {
+        return "\"borrower-" + borrower.getId() + "-" + borrower.getVersion() + "\"";
+    }
+}
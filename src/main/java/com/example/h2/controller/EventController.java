@@ -0,0 +1,300 @@
+package com.example.h2.controller;
+
+import com.example.h2.response.ChangeEvent;
+import com.example.h2.service.ChangeFeed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Server-Sent Events feed of committed changes. A client reconnecting with Last-Event-ID first receives the events
+// it missed; when they are no longer buffered it gets a "reset" event and should reload before applying the rest.
+// One dispatcher thread queues the events for every stream in sequence order; a pool of writers drains each queue,
+// at most one writer per stream. Once a stream is set up its writes are non-blocking: when the client stops reading,
+// the writer leaves the stream and the container calls it back once the socket drains, so stalled clients never hold
+// a writer. A stream whose queue fills up or that stays unwritable longer than the write timeout is dropped; its
+// client can reconnect with its last id.
+@RestController
+@RequestMapping("/events")
+public class EventController {
+
+    public static final String RESET_EVENT = "reset";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private final ChangeFeed changeFeed;
+    private final long timeoutMillis;
+    private final long writeTimeoutNanos;
+    private final int queueCapacity;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(daemon("change-feed"));
+    private final ExecutorService writers;
+
+    public EventController(ChangeFeed changeFeed, MeterRegistry meterRegistry,
+                           @Value("${app.events.timeout:30m}") Duration timeout,
+                           @Value("${app.events.heartbeat:15s}") Duration heartbeat,
+                           @Value("${app.events.write-timeout:10s}") Duration writeTimeout,
+                           @Value("${app.events.queue-capacity:${app.events.buffer-size:10000}}") int queueCapacity,
+                           @Value("${app.events.writers:16}") int writers) {
+        this.changeFeed = changeFeed;
+        this.timeoutMillis = timeout.toMillis();
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.queueCapacity = queueCapacity;
+        this.writers = Executors.newFixedThreadPool(writers, daemon("change-feed-writer-"));
+        changeFeed.addListener(events -> scheduleDrain());
+        dispatcher.scheduleAtFixedRate(this::sendHeartbeats, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        long stallCheckMillis = Math.max(writeTimeout.toMillis() / 2, 1);
+        dispatcher.scheduleAtFixedRate(this::dropStalled, stallCheckMillis, stallCheckMillis, TimeUnit.MILLISECONDS);
+        Gauge.builder("library.events.subscribers", subscribers, Set::size)
+                .description("Open GET /events streams")
+                .register(meterRegistry);
+    }
+
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId,
+                                   HttpServletResponse response) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, response, queueCapacity);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        dispatcher.execute(() -> open(subscriber, lastEventId));
+        return emitter;
+    }
+
+    // A stream whose client went away fails its next write; the error is dispatched back here and needs no response.
+    @ExceptionHandler(IOException.class)
+    public void handleDisconnectedClient() {
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdownNow();
+        subscribers.forEach(this::drop);
+        writers.shutdown();
+    }
+
+    private void open(Subscriber subscriber, String lastEventId) {
+        List<ChangeEvent> missed = List.of();
+        if (lastEventId == null) {
+            subscriber.cursor = changeFeed.head();
+        } else {
+            long sequence = changeFeed.sequenceOf(lastEventId);
+            missed = sequence < 0 ? null : changeFeed.after(sequence);
+            subscriber.cursor = sequence;
+        }
+        // The comment commits the response, so the client knows the stream is open before any change arrives. A backlog
+        // that would not fit the queue is replaced by a reset.
+        subscriber.queue.offer(SseEmitter.event().comment("connected"));
+        if (missed == null || missed.size() >= queueCapacity - 1) {
+            long head = changeFeed.head();
+            subscriber.queue.offer(SseEmitter.event().id(changeFeed.id(head)).name(RESET_EVENT)
+                    .data(Map.of("sequence", head), MediaType.APPLICATION_JSON));
+            subscriber.cursor = head;
+        } else {
+            enqueue(subscriber, missed);
+        }
+        subscribers.add(subscriber);
+        flush(subscriber);
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            dispatcher.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        for (Subscriber subscriber : subscribers) {
+            List<ChangeEvent> events = changeFeed.after(subscriber.cursor);
+            if (events == null) {
+                // Fell further behind than the buffer holds; reconnecting with its last id resets it.
+                drop(subscriber);
+            } else if (!events.isEmpty()) {
+                enqueue(subscriber, events);
+                flush(subscriber);
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            if (!subscriber.queue.offer(SseEmitter.event().id(changeFeed.id(event.getSequence())).name(event.getType())
+                    .data(event, MediaType.APPLICATION_JSON))) {
+                drop(subscriber);
+                return;
+            }
+            subscriber.cursor = event.getSequence();
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.isEmpty()) {
+                subscriber.queue.offer(SseEmitter.event().comment(""));
+                flush(subscriber);
+            }
+        }
+    }
+
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long blocked = subscriber.blockedSince;
+            if (blocked != 0 && now - blocked > writeTimeoutNanos) {
+                drop(subscriber);
+            }
+        }
+    }
+
+    // A stream being written is completed by its writer; a stalled one has no writer, so the flush below completes it.
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.closed = true;
+        subscriber.queue.clear();
+        flush(subscriber);
+    }
+
+    private void flush(Subscriber subscriber) {
+        if (subscriber.writing.compareAndSet(false, true)) {
+            writers.execute(() -> write(subscriber));
+        }
+    }
+
+    // Runs while the subscriber's writing flag is held; a closed subscriber keeps the flag so nothing writes after it.
+    // A stream that cannot take more gives the flag up and is flushed again from onWritePossible.
+    private void write(Subscriber subscriber) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            while (!subscriber.closed && writable(subscriber) && (event = subscriber.queue.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // The client is gone; the container completes the emitter itself.
+                    gone(subscriber);
+                    return;
+                }
+            }
+            if (subscriber.closed) {
+                subscriber.emitter.complete();
+                return;
+            }
+            subscriber.writing.set(false);
+            boolean more = subscriber.closed || (subscriber.ready && !subscriber.queue.isEmpty());
+            if (!more || !subscriber.writing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    // Until the response is committed the stream writes in blocking mode; its socket is still empty then. Afterwards
+    // isReady() tells whether the socket takes more, and when it does not, the container calls onWritePossible later.
+    private boolean writable(Subscriber subscriber) {
+        if (subscriber.output == null && !startNonBlocking(subscriber)) {
+            return true;
+        }
+        subscriber.ready = false;
+        if (subscriber.output.isReady()) {
+            subscriber.ready = true;
+            subscriber.blockedSince = 0;
+            return true;
+        }
+        if (subscriber.blockedSince == 0) {
+            subscriber.blockedSince = System.nanoTime();
+        }
+        return false;
+    }
+
+    // Spring writes the events sent before the async request was set up from the request thread, holding the
+    // emitter's monitor, and commits the response doing so. Once it is committed nothing else writes in blocking mode.
+    private boolean startNonBlocking(Subscriber subscriber) {
+        synchronized (subscriber.emitter) {
+            if (!subscriber.response.isCommitted()) {
+                return false;
+            }
+        }
+        try {
+            ServletOutputStream output = subscriber.response.getOutputStream();
+            output.setWriteListener(new WriteListener() {
+                @Override
+                public void onWritePossible() {
+                    subscriber.ready = true;
+                    flush(subscriber);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    gone(subscriber);
+                }
+            });
+            subscriber.output = output;
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            gone(subscriber);
+            return false;
+        }
+    }
+
+    private void gone(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.closed = true;
+        subscriber.queue.clear();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name.endsWith("-") ? name + count.incrementAndGet() : name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final HttpServletResponse response;
+        private final Queue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean writing = new AtomicBoolean();
+        // Sequence of the last event queued; only the dispatcher touches it.
+        private long cursor;
+        // Set once the stream writes in non-blocking mode; only the writer holding the flag touches it.
+        private ServletOutputStream output;
+        private volatile boolean ready = true;
+        // When the stream last found its socket full, or 0 while it is writable.
+        private volatile long blockedSince;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, HttpServletResponse response, int queueCapacity) {
+            this.emitter = emitter;
+            this.response = response;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        }
+    }
+}
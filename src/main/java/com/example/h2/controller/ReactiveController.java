@@ -0,0 +1,80 @@
+package com.example.h2.controller;
+
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.response.ApiResponse;
+import com.example.h2.response.BookResponse;
+import com.example.h2.service.BookService;
+import com.example.h2.service.ReactiveReadService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// Reactive variants of the read endpoints under /reactive. Responses are written when the R2DBC query completes,
+// without a service thread waiting on JDBC; NDJSON requests to /books/all stream the catalog with backpressure.
+@RestController
+@RequestMapping("/reactive")
+@ConditionalOnProperty(name = "app.reactive.enabled", havingValue = "true")
+public class ReactiveController {
+
+    @Autowired
+    private ReactiveReadService reactiveReadService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @GetMapping("/books/{id}")
+    public Mono<ResponseEntity<ApiResponse<Book>>> getBook(@PathVariable Long id) {
+        return reactiveReadService.getBook(id)
+                .map(book -> new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), book))
+                .map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/books/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ApiResponse<BookResponse>>> getAllUniqueBooks(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + BookService.DEFAULT_PAGE_SIZE) int size) {
+        return reactiveReadService.getAllUniqueBooks(cursor, size)
+                .map(books -> new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), books))
+                .map(ResponseEntity::ok);
+    }
+
+    // Each page is serialized into one chunk of NDJSON lines; writing and flushing book by book is an order of
+    // magnitude slower.
+    @GetMapping(value = "/books/all", produces = BookController.APPLICATION_NDJSON_VALUE)
+    public Flux<String> streamUniqueBooks(@RequestParam(required = false) String cursor) {
+        return reactiveReadService.streamUniqueBooks(cursor).map(this::toNdjson);
+    }
+
+    @GetMapping("/borrower/{id}")
+    public Mono<ResponseEntity<ApiResponse<Borrower>>> getBorrower(@PathVariable Long id) {
+        return reactiveReadService.getBorrower(id)
+                .map(borrower -> new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), borrower))
+                .map(ResponseEntity::ok);
+    }
+
+    private String toNdjson(List<Book> books) {
+        StringBuilder lines = new StringBuilder();
+        for (Book book : books) {
+            try {
+                lines.append(objectMapper.writeValueAsString(book)).append('\n');
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return lines.toString();
+    }
+}
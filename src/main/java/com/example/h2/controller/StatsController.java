@@ -0,0 +1,40 @@
+package com.example.h2.controller;
+
+import com.example.h2.response.ApiResponse;
+import com.example.h2.response.StatsResponse;
+import com.example.h2.response.TitleStatsResponse;
+import com.example.h2.service.LibraryStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Served from the in-memory state of LibraryStats; the database is never queried here.
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    @Autowired
+    private LibraryStats libraryStats;
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<StatsResponse>> getSummary() {
+        return ResponseEntity.ok(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), libraryStats.summary()));
+    }
+
+    @GetMapping("/popular")
+    public ResponseEntity<ApiResponse<List<TitleStatsResponse>>> getMostBorrowed(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), libraryStats.mostBorrowed(limit)));
+    }
+
+    @GetMapping("/isbn/{isbn}")
+    public ResponseEntity<ApiResponse<TitleStatsResponse>> getTitle(@PathVariable String isbn) {
+        return ResponseEntity.ok(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), libraryStats.title(isbn)));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.h2.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,28 +1,62 @@
 package com.example.h2.exception;
 
 import com.example.h2.response.ErrorResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
+    public static final String EXCEPTIONS_COUNTER = "library.exceptions";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @ExceptionHandler(NotFoundException.class)
     public ResponseEntity<ErrorResponse> handleNotFound(NotFoundException ex) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage()));
+        return respond(HttpStatus.BAD_REQUEST, ex, ex.getMessage());
     }
 
     @ExceptionHandler(BadRequestException.class)
     public ResponseEntity<ErrorResponse> handleBadRequest(BadRequestException ex) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage()));
+        return respond(HttpStatus.BAD_REQUEST, ex, ex.getMessage());
     }
 
     @ExceptionHandler(BookValidationException.class)
     public ResponseEntity<ErrorResponse> handleBookValidation(BookValidationException ex) {
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                .body(new ErrorResponse(HttpStatus.BAD_REQUEST.value(), ex.getMessage()));
+        return respond(HttpStatus.BAD_REQUEST, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(ConflictException ex) {
+        return respond(HttpStatus.CONFLICT, ex, ex.getMessage());
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleTaskRejected(TaskRejectedException ex) {
+        return respond(HttpStatus.SERVICE_UNAVAILABLE, ex, "Service is overloaded, please retry later.");
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequests(TooManyRequestsException ex) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+        return respond(HttpStatus.TOO_MANY_REQUESTS, ex, ex.getMessage(), headers);
+    }
+
+    private ResponseEntity<ErrorResponse> respond(HttpStatus status, Exception ex, String message) {
+        return respond(status, ex, message, HttpHeaders.EMPTY);
+    }
+
+    private ResponseEntity<ErrorResponse> respond(HttpStatus status, Exception ex, String message, HttpHeaders headers) {
+        meterRegistry.counter(EXCEPTIONS_COUNTER,
+                "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+        return ResponseEntity.status(status).headers(headers).body(new ErrorResponse(status.value(), message));
     }
 }
@@ -0,0 +1,17 @@
+package com.example.h2.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    // Thrown for every request shed under overload, so it skips the stack trace: the 429 has to stay cheap while the
+    // admitted requests are using up the CPU.
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,13 +1,18 @@
 package com.example.h2.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import java.util.HashSet;
 import java.util.Set;
 
+// Not in the second-level cache: the borrowers cache of BorrowerService already fronts reads by id, and every loan
+// change bumps the version, which would invalidate the cached entity each time.
 @Entity
 public class Borrower {
     @Id
@@ -20,6 +25,12 @@ public class Borrower {
     @NotBlank
     private String emailAddress;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    // Loans live in their own table; this is filled from LoanRepository when a borrower is read.
+    @Transient
     private Set<Long> borrowedBookIds = new HashSet<>();
 
     public Long getId() {
@@ -30,6 +41,14 @@ public class Borrower {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getName() {
         return name;
     }
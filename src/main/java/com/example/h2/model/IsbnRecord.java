@@ -0,0 +1,41 @@
+package com.example.h2.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Canonical title and author of an ISBN; every copy in the book table must match it.
+@Entity
+@Table(name = "isbn_record")
+public class IsbnRecord {
+
+    @Id
+    private String isbn;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(nullable = false)
+    private String author;
+
+    protected IsbnRecord() {}
+
+    public IsbnRecord(String isbn, String title, String author) {
+        this.isbn = isbn;
+        this.title = title;
+        this.author = author;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.h2.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "loan",
+        uniqueConstraints = @UniqueConstraint(name = "uk_loan_borrower_book", columnNames = {"borrower_id", "book_id"}),
+        indexes = @Index(name = "idx_loan_book", columnList = "book_id"))
+public class Loan {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false)
+    private Long bookId;
+
+    @Column(name = "borrower_id", nullable = false)
+    private Long borrowerId;
+
+    @Column(name = "borrowed_at", nullable = false)
+    private Instant borrowedAt;
+
+    protected Loan() {}
+
+    public Loan(Long bookId, Long borrowerId) {
+        this.bookId = bookId;
+        this.borrowerId = borrowerId;
+        this.borrowedAt = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Long getBorrowerId() {
+        return borrowerId;
+    }
+
+    public Instant getBorrowedAt() {
+        return borrowedAt;
+    }
+}
@@ -1,16 +1,55 @@
 package com.example.h2.repository;
 
 import com.example.h2.model.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
-    @Query("SELECT DISTINCT b FROM Book b ORDER BY b.isbn, b.title, b.author")
-    List<Book> findDistinctBooks();
+    int EXPORT_FETCH_SIZE = 500;
 
+    // Query results are kept in the Hibernate query cache and invalidated whenever the book table changes.
+    // A book is the representative of its (isbn, title, author) group when no copy with a lower id exists.
+    @Query("SELECT b FROM Book b WHERE b.id > :afterId AND NOT EXISTS " +
+            "(SELECT 1 FROM Book c WHERE c.isbn = b.isbn AND c.title = b.title AND c.author = b.author AND c.id < b.id) " +
+            "ORDER BY b.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Book> findDistinctBooks(@Param("afterId") long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Book> findByIsbn(String isbn);
+
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id, b.isbn FROM Book b WHERE b.id IN :ids")
+    List<Object[]> findIsbns(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MIN(b.id) FROM Book b WHERE b.isbn = :isbn")
+    Long findFirstIdByIsbn(@Param("isbn") String isbn);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAllBy();
+
+    // Plain columns rather than entities, so warming the search index does not hydrate every book.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b.id, b.isbn, b.title, b.author FROM Book b ORDER BY b.id")
+    Stream<Object[]> streamAllColumns();
 }
@@ -1,7 +1,21 @@
 package com.example.h2.repository;
 
 import com.example.h2.model.Borrower;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface BorrowerRepository extends JpaRepository<Borrower, Long> {
-}
\ No newline at end of file
+    @Query("SELECT b FROM Borrower b WHERE b.id IN (SELECT l.borrowerId FROM Loan l WHERE l.bookId = :bookId) ORDER BY b.id")
+    List<Borrower> findBorrowersOfBook(@Param("bookId") Long bookId);
+
+    // Locks the borrower row and bumps its version, which serializes concurrent loan changes of one borrower.
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    @Query("SELECT b FROM Borrower b WHERE b.id = :id")
+    Optional<Borrower> lockForLoanChange(@Param("id") Long id);
+}
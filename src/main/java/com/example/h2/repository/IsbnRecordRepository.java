@@ -0,0 +1,33 @@
+package com.example.h2.repository;
+
+import com.example.h2.model.IsbnRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface IsbnRecordRepository extends JpaRepository<IsbnRecord, String> {
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "isbn_record"))
+    @Query(value = "INSERT INTO isbn_record (isbn, title, author) SELECT :isbn, :title, :author " +
+            "WHERE NOT EXISTS (SELECT 1 FROM isbn_record WHERE isbn = :isbn)", nativeQuery = true)
+    int insertIfAbsent(@Param("isbn") String isbn, @Param("title") String title, @Param("author") String author);
+
+    @Modifying
+    @Query("DELETE FROM IsbnRecord r WHERE r.isbn = :isbn AND NOT EXISTS (SELECT 1 FROM Book b WHERE b.isbn = :isbn)")
+    int deleteIfUnused(@Param("isbn") String isbn);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + BookRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.isbn, r.title, r.author FROM IsbnRecord r")
+    Stream<Object[]> streamAllColumns();
+}
@@ -0,0 +1,67 @@
+package com.example.h2.repository;
+
+import com.example.h2.model.Loan;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface LoanRepository extends JpaRepository<Loan, Long> {
+    boolean existsByBookIdAndBorrowerId(Long bookId, Long borrowerId);
+
+    // Stands in for the borrower's loan collection in the query cache; any change to the loan table invalidates it.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("SELECT l.bookId FROM Loan l WHERE l.borrowerId = :borrowerId ORDER BY l.bookId")
+    List<Long> findBookIdsByBorrowerId(@Param("borrowerId") Long borrowerId);
+
+    @Query("SELECT l.borrowerId FROM Loan l WHERE l.bookId = :bookId")
+    List<Long> findBorrowerIdsByBookId(@Param("bookId") Long bookId);
+
+    List<Loan> findByBorrowerIdIn(Collection<Long> borrowerIds);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT l.borrowerId, l.bookId, b.isbn FROM Loan l JOIN Book b ON b.id = l.bookId")
+    Stream<Object[]> streamAllWithIsbn();
+
+    @Query("SELECT l.bookId FROM Loan l WHERE l.borrowerId = :borrowerId AND l.bookId IN :bookIds")
+    List<Long> findBorrowedBookIds(@Param("borrowerId") Long borrowerId, @Param("bookIds") Collection<Long> bookIds);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "loan"))
+    @Query(value = "INSERT INTO loan (book_id, borrower_id, borrowed_at) SELECT :bookId, :borrowerId, CURRENT_TIMESTAMP " +
+            "WHERE EXISTS (SELECT 1 FROM book WHERE id = :bookId) " +
+            "AND NOT EXISTS (SELECT 1 FROM loan WHERE book_id = :bookId AND borrower_id = :borrowerId)", nativeQuery = true)
+    int insertIfAbsent(@Param("bookId") Long bookId, @Param("borrowerId") Long borrowerId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "loan"))
+    @Query(value = "INSERT INTO loan (book_id, borrower_id, borrowed_at) SELECT b.id, :borrowerId, CURRENT_TIMESTAMP FROM book b " +
+            "WHERE b.id IN (:bookIds) " +
+            "AND NOT EXISTS (SELECT 1 FROM loan WHERE book_id = b.id AND borrower_id = :borrowerId)", nativeQuery = true)
+    int insertAllIfAbsent(@Param("bookIds") Collection<Long> bookIds, @Param("borrowerId") Long borrowerId);
+
+    @Modifying
+    @Query("DELETE FROM Loan l WHERE l.bookId = :bookId AND l.borrowerId = :borrowerId")
+    int deleteLoan(@Param("bookId") Long bookId, @Param("borrowerId") Long borrowerId);
+
+    @Modifying
+    @Query("DELETE FROM Loan l WHERE l.borrowerId = :borrowerId AND l.bookId IN :bookIds")
+    int deleteLoans(@Param("bookIds") Collection<Long> bookIds, @Param("borrowerId") Long borrowerId);
+
+    @Modifying
+    @Query("DELETE FROM Loan l WHERE l.bookId = :bookId")
+    int deleteByBookId(@Param("bookId") Long bookId);
+
+    @Modifying
+    @Query("DELETE FROM Loan l WHERE l.borrowerId = :borrowerId")
+    int deleteByBorrowerId(@Param("borrowerId") Long borrowerId);
+}
@@ -0,0 +1,77 @@
+package com.example.h2.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookBatchResponse {
+
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+
+    private int received;
+    private int created;
+    private int rejected;
+    private List<Item> items = new ArrayList<>();
+
+    public BookBatchResponse() {}
+
+    public void addCreated(int index, Long id) {
+        items.add(new Item(index, CREATED, id, null));
+        received++;
+        created++;
+    }
+
+    public void addRejected(int index, String error) {
+        items.add(new Item(index, REJECTED, null, error));
+        received++;
+        rejected++;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public static class Item {
+        private int index;
+        private String status;
+        private Long id;
+        private String error;
+
+        public Item() {}
+
+        public Item(int index, String status, Long id, String error) {
+            this.index = index;
+            this.status = status;
+            this.id = id;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
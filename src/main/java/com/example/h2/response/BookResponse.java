@@ -1,6 +1,7 @@
 package com.example.h2.response;
 
 import com.example.h2.model.Book;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.List;
 
@@ -8,12 +9,17 @@ public class BookResponse {
 
     private List<Book> books;
     private long totalBooks;
+    private String next;
+    // Search only: a prefix matched more words than were searched, so totalBooks may undercount.
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean truncated;
 
     public BookResponse() {}
 
-    public BookResponse(List<Book> books, long totalBooks) {
+    public BookResponse(List<Book> books, long totalBooks, String next) {
         this.books = books;
         this.totalBooks = totalBooks;
+        this.next = next;
     }
 
     public List<Book> getBooks() {
@@ -31,4 +37,20 @@ public class BookResponse {
     public void setTotalBooks(long totalBooks) {
         this.totalBooks = totalBooks;
     }
+
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
 }
@@ -0,0 +1,50 @@
+package com.example.h2.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+
+    public static final String BOOK_CREATED = "book.created";
+    public static final String BOOK_DELETED = "book.deleted";
+    public static final String BOOK_BORROWED = "book.borrowed";
+    public static final String BOOK_RETURNED = "book.returned";
+    public static final String BORROWER_REGISTERED = "borrower.registered";
+    public static final String BORROWER_REMOVED = "borrower.removed";
+
+    private long sequence;
+    private String type;
+    private Long bookId;
+    private Long borrowerId;
+    private long timestamp;
+
+    public ChangeEvent() {}
+
+    public ChangeEvent(long sequence, String type, Long bookId, Long borrowerId, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.bookId = bookId;
+        this.borrowerId = borrowerId;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Long getBorrowerId() {
+        return borrowerId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.h2.response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LoanBatchResponse {
+
+    public static final String BORROWED = "BORROWED";
+    public static final String RETURNED = "RETURNED";
+    public static final String REJECTED = "REJECTED";
+
+    private int received;
+    private int succeeded;
+    private int rejected;
+    private List<Item> items = new ArrayList<>();
+
+    public LoanBatchResponse() {}
+
+    public void addSucceeded(int index, Long bookId, String status) {
+        items.add(new Item(index, bookId, status, null));
+        received++;
+        succeeded++;
+    }
+
+    public void addRejected(int index, Long bookId, String error) {
+        items.add(new Item(index, bookId, REJECTED, error));
+        received++;
+        rejected++;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public static class Item {
+        private int index;
+        private Long bookId;
+        private String status;
+        private String error;
+
+        public Item() {}
+
+        public Item(int index, Long bookId, String status, String error) {
+            this.index = index;
+            this.bookId = bookId;
+            this.status = status;
+            this.error = error;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Long getBookId() {
+            return bookId;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
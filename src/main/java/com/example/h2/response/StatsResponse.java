@@ -0,0 +1,28 @@
+package com.example.h2.response;
+
+public class StatsResponse {
+
+    private long loans;
+    private long activeBorrowers;
+    private long borrows;
+
+    public StatsResponse() {}
+
+    public StatsResponse(long loans, long activeBorrowers, long borrows) {
+        this.loans = loans;
+        this.activeBorrowers = activeBorrowers;
+        this.borrows = borrows;
+    }
+
+    public long getLoans() {
+        return loans;
+    }
+
+    public long getActiveBorrowers() {
+        return activeBorrowers;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+}
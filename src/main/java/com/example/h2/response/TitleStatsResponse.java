@@ -0,0 +1,40 @@
+package com.example.h2.response;
+
+public class TitleStatsResponse {
+
+    private String isbn;
+    private String title;
+    private String author;
+    private long borrows;
+    private long onLoan;
+
+    public TitleStatsResponse() {}
+
+    public TitleStatsResponse(String isbn, String title, String author, long borrows, long onLoan) {
+        this.isbn = isbn;
+        this.title = title;
+        this.author = author;
+        this.borrows = borrows;
+        this.onLoan = onLoan;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public long getOnLoan() {
+        return onLoan;
+    }
+}
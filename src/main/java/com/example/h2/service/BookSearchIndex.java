@@ -0,0 +1,426 @@
+package com.example.h2.service;
+
+import com.example.h2.model.Book;
+import com.example.h2.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.example.h2.service.TransactionCallbacks.afterCommit;
+
+// In-memory inverted index over book titles and authors. Each distinct book (the lowest-id copy of an ISBN) is
+// indexed once; postings are sorted arrays of book ids, so multi-term queries start from the rarest term and
+// probe the others by binary search. Updates are applied after commit under a write lock.
+@Component
+public class BookSearchIndex implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // A title hit outranks an author hit, and a whole-word hit outranks a prefix hit.
+    private static final int TITLE_WEIGHT = 2;
+    private static final int AUTHOR_WEIGHT = 1;
+    private static final int EXACT_BONUS = 2;
+    // Room for the best single-term score, TITLE_WEIGHT * EXACT_BONUS, next to an id packed into one long.
+    private static final int SCORE_BITS = 3;
+    private static final long SCORE_MASK = (1L << SCORE_BITS) - 1;
+
+    private final NavigableMap<String, Postings> titleTerms = new TreeMap<>();
+    private final NavigableMap<String, Postings> authorTerms = new TreeMap<>();
+    private final Map<String, Long> indexedIdByIsbn = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.search.max-expansions:64}")
+    private int maxExpansions;
+
+    // truncated is set when a prefix term matched more indexed words than max-expansions; the words past the cap are
+    // not searched, so total only counts the books reached through the others.
+    public record Hits(List<Long> ids, int total, boolean truncated) {}
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = bookRepository.streamAllColumns()) {
+                Iterator<Object[]> iterator = rows.iterator();
+                lock.writeLock().lock();
+                try {
+                    while (iterator.hasNext()) {
+                        Object[] row = iterator.next();
+                        Book book = new Book();
+                        book.setIsbn((String) row[1]);
+                        book.setTitle((String) row[2]);
+                        book.setAuthor((String) row[3]);
+                        indexIfFirstCopy((Long) row[0], book);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        });
+        logger.info("Indexed {} books ({} title terms, {} author terms) in {} ms", indexedIdByIsbn.size(),
+                titleTerms.size(), authorTerms.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void add(Book book) {
+        addAll(List.of(book));
+    }
+
+    public void addAll(Collection<Book> books) {
+        if (books.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                books.forEach(book -> indexIfFirstCopy(book.getId(), book));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // replacementId is the lowest-id copy of the ISBN that is left after the delete, or null if none is.
+    public void remove(Book book, Long replacementId) {
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                Long indexedId = indexedIdByIsbn.get(book.getIsbn());
+                if (indexedId == null || !indexedId.equals(book.getId())) {
+                    return;
+                }
+                update(book, indexedId, false);
+                indexedIdByIsbn.remove(book.getIsbn());
+                if (replacementId != null) {
+                    indexIfFirstCopy(replacementId, book);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Every query term must match a title or author word by prefix. Results are ordered by score, then by id. The
+    // candidates stay in primitive arrays and only the best offset + limit of them are kept in a heap, so a query
+    // matching most of the catalog neither boxes nor fully sorts its candidates.
+    public Hits search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            List<List<Match>> matchesPerTerm = new ArrayList<>();
+            boolean truncated = false;
+            for (String term : terms) {
+                List<Match> matches = new ArrayList<>();
+                truncated |= expand(term, matches);
+                if (matches.isEmpty()) {
+                    return new Hits(List.of(), 0, false);
+                }
+                matchesPerTerm.add(matches);
+            }
+            matchesPerTerm.sort(Comparator.comparingLong(BookSearchIndex::candidateCount));
+
+            Candidates candidates = Candidates.of(matchesPerTerm.get(0));
+            for (List<Match> matches : matchesPerTerm.subList(1, matchesPerTerm.size())) {
+                candidates.retainMatching(matches);
+            }
+
+            int wanted = (int) Math.min((long) offset + limit, candidates.size);
+            TopHits top = new TopHits(wanted);
+            for (int i = 0; i < candidates.size; i++) {
+                top.offer(candidates.ids[i], candidates.scores[i]);
+            }
+            return new Hits(top.ranked(offset), candidates.size, truncated);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedIdByIsbn.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower-cased, accent-folded words of letters and digits.
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return Arrays.stream(NON_ALPHANUMERIC.split(folded.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    private void indexIfFirstCopy(Long id, Book book) {
+        Long indexedId = indexedIdByIsbn.get(book.getIsbn());
+        if (indexedId != null && indexedId <= id) {
+            return;
+        }
+        if (indexedId != null) {
+            update(book, indexedId, false);
+        }
+        indexedIdByIsbn.put(book.getIsbn(), id);
+        update(book, id, true);
+    }
+
+    private void update(Book book, long id, boolean add) {
+        update(titleTerms, book.getTitle(), id, add);
+        update(authorTerms, book.getAuthor(), id, add);
+    }
+
+    private static void update(NavigableMap<String, Postings> terms, String text, long id, boolean add) {
+        for (String token : new LinkedHashSet<>(tokenize(text))) {
+            if (add) {
+                terms.computeIfAbsent(token, t -> new Postings()).add(id);
+            } else {
+                Postings postings = terms.get(token);
+                if (postings != null && postings.remove(id) && postings.size == 0) {
+                    terms.remove(token);
+                }
+            }
+        }
+    }
+
+    // Words that start with the query term, in both fields, capped so a one-letter prefix stays cheap. The first
+    // words in alphabetical order are kept, the whole word itself always among them. Returns whether any were cut off.
+    private boolean expand(String term, List<Match> matches) {
+        boolean truncated = expand(titleTerms, term, TITLE_WEIGHT, matches);
+        return expand(authorTerms, term, AUTHOR_WEIGHT, matches) || truncated;
+    }
+
+    private boolean expand(NavigableMap<String, Postings> terms, String term, int weight, List<Match> matches) {
+        int expansions = 0;
+        for (Map.Entry<String, Postings> entry : terms.tailMap(term, true).entrySet()) {
+            if (!entry.getKey().startsWith(term)) {
+                return false;
+            }
+            if (expansions++ == maxExpansions) {
+                return true;
+            }
+            matches.add(new Match(entry.getValue(), entry.getKey().equals(term) ? weight * EXACT_BONUS : weight));
+        }
+        return false;
+    }
+
+    private static long candidateCount(List<Match> matches) {
+        return matches.stream().mapToLong(match -> match.postings().size).sum();
+    }
+
+    private record Match(Postings postings, int score) {}
+
+    // Book ids matching every term so far, in ascending order, with their summed scores.
+    private static final class Candidates {
+        private final long[] ids;
+        private final int[] scores;
+        private int size;
+
+        private Candidates(long[] ids, int[] scores, int size) {
+            this.ids = ids;
+            this.scores = scores;
+            this.size = size;
+        }
+
+        // Ids with their best score among the matches of one term. Each id and score is packed into one long so the
+        // postings of all the matches can be merged with a primitive sort; the last entry per id has the best score.
+        static Candidates of(List<Match> matches) {
+            if (matches.size() == 1) {
+                Postings postings = matches.get(0).postings();
+                int[] scores = new int[postings.size];
+                Arrays.fill(scores, matches.get(0).score());
+                return new Candidates(Arrays.copyOf(postings.ids, postings.size), scores, postings.size);
+            }
+            long[] packed = new long[(int) candidateCount(matches)];
+            int length = 0;
+            for (Match match : matches) {
+                Postings postings = match.postings();
+                for (int i = 0; i < postings.size; i++) {
+                    packed[length++] = postings.ids[i] << SCORE_BITS | match.score();
+                }
+            }
+            Arrays.sort(packed);
+            long[] ids = new long[length];
+            int[] scores = new int[length];
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                long id = packed[i] >>> SCORE_BITS;
+                if (i + 1 < length && packed[i + 1] >>> SCORE_BITS == id) {
+                    continue;
+                }
+                ids[size] = id;
+                scores[size++] = (int) (packed[i] & SCORE_MASK);
+            }
+            return new Candidates(ids, scores, size);
+        }
+
+        // Drops the ids no match of the term contains and adds the best score of those that do, compacting in place.
+        void retainMatching(List<Match> matches) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int best = 0;
+                for (Match match : matches) {
+                    if (match.score() > best && match.postings().contains(ids[i])) {
+                        best = match.score();
+                    }
+                }
+                if (best > 0) {
+                    ids[kept] = ids[i];
+                    scores[kept++] = scores[i] + best;
+                }
+            }
+            size = kept;
+        }
+    }
+
+    // Bounded heap of the best hits seen so far, with the worst of them at the root: lower score, then higher id.
+    private static final class TopHits {
+        private final long[] ids;
+        private final int[] scores;
+        private int size;
+
+        TopHits(int capacity) {
+            this.ids = new long[capacity];
+            this.scores = new int[capacity];
+        }
+
+        void offer(long id, int score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && worse(ids[0], scores[0], id, score)) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // Empties the heap, best hit first, skipping the first offset of them.
+        List<Long> ranked(int offset) {
+            Long[] ranked = new Long[size];
+            while (size > 0) {
+                ranked[size - 1] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return offset >= ranked.length ? List.of() : Arrays.asList(ranked).subList(offset, ranked.length);
+        }
+
+        private static boolean worse(long id, int score, long otherId, int otherScore) {
+            return score != otherScore ? score < otherScore : id > otherId;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!worse(ids[index], scores[index], ids[parent], scores[parent])) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int worst = index;
+                for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                    if (worse(ids[child], scores[child], ids[worst], scores[worst])) {
+                        worst = child;
+                    }
+                }
+                if (worst == index) {
+                    return;
+                }
+                swap(index, worst);
+                index = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            int score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    // Sorted, growable array of book ids. Ids come from a sequence, so adds are almost always appends.
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int index = Arrays.binarySearch(ids, 0, size, id);
+                if (index >= 0) {
+                    return;
+                }
+                insertAt(-index - 1, id);
+            } else {
+                insertAt(size, id);
+            }
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void insertAt(int index, long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+    }
+}
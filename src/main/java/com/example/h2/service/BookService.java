@@ -1,32 +1,57 @@
 package com.example.h2.service;
 
+import com.example.h2.response.BookBatchResponse;
 import com.example.h2.response.BookResponse;
+import com.example.h2.response.ChangeEvent;
 import com.example.h2.exception.BadRequestException;
 import com.example.h2.exception.BookValidationException;
 import com.example.h2.exception.NotFoundException;
 import com.example.h2.model.Book;
 import com.example.h2.model.Borrower;
 import com.example.h2.model.EntityType;
+import com.example.h2.model.Loan;
 import com.example.h2.repository.BorrowerRepository;
 import com.example.h2.repository.BookRepository;
+import com.example.h2.repository.LoanRepository;
+import com.example.h2.service.IsbnRegistry.Edition;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.scheduling.annotation.Async;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static com.example.h2.config.AsyncConfig.SERVICE_EXECUTOR;
+import static com.example.h2.config.MetricsConfig.SERVICE_TIMER;
+import static com.example.h2.config.CacheConfig.BOOKS_CACHE;
+import static com.example.h2.config.CacheConfig.BORROWERS_CACHE;
 import static com.example.h2.exception.NotFoundException.BOOK_MESSAGE;
 
 @Service
+@Timed(SERVICE_TIMER)
 public class BookService {
     private static final Logger logger = LoggerFactory.getLogger(BookService.class);
 
@@ -36,103 +61,286 @@ public class BookService {
     @Autowired
     private BorrowerRepository borrowerRepository;
 
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private RetryingTransactionExecutor retryingTransactionExecutor;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private IsbnRegistry isbnRegistry;
+
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private LibraryStats libraryStats;
+
+    @Autowired
+    @Qualifier(SERVICE_EXECUTOR)
+    private Executor serviceExecutor;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int jdbcBatchSize;
+
+    private static final String REQUIRED_FIELDS_MESSAGE = "Title, author and ISBN are required.";
     private static final String BOOK_VALIDATION_EXCEPTION_MESSAGE = "A book with ISBN %s must have the same title and author. Existing: %s by %s, Provided: %s by %s";
 
-    @Transactional
-    @Async
+    @Async(SERVICE_EXECUTOR)
     public CompletableFuture<Book> saveBook(Book book) {
-        return CompletableFuture.supplyAsync(() -> {
-            List<Book> existingBooks = bookRepository.findByIsbn(book.getIsbn());
-
-            if (!existingBooks.isEmpty()) {
-                Book existingBook = existingBooks.get(0);
-                if (!existingBook.getTitle().equals(book.getTitle()) ||
-                        !existingBook.getAuthor().equals(book.getAuthor())) {
-                    String errorMessage = String.format(BOOK_VALIDATION_EXCEPTION_MESSAGE, book.getIsbn(), existingBook.getTitle(), existingBook.getAuthor(), book.getTitle(), book.getAuthor());
-                    logger.error(errorMessage);
-                    throw new BookValidationException(errorMessage);
+        if (isBlank(book.getTitle()) || isBlank(book.getAuthor()) || isBlank(book.getIsbn())) {
+            throw new BadRequestException(REQUIRED_FIELDS_MESSAGE);
+        }
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Saving book " + book.getIsbn(), () -> {
+            Edition edition = isbnRegistry.claim(book);
+            if (!edition.matches(book)) {
+                String errorMessage = String.format(BOOK_VALIDATION_EXCEPTION_MESSAGE, book.getIsbn(), edition.title(), edition.author(), book.getTitle(), book.getAuthor());
+                logger.error(errorMessage);
+                throw new BookValidationException(errorMessage);
+            }
+
+            Book savedBook = bookRepository.save(book);
+            entityCache.putAfterCommit(BOOKS_CACHE, savedBook.getId(), savedBook);
+            bookSearchIndex.add(savedBook);
+            catalogVersion.bumpAfterCommit();
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_CREATED, savedBook.getId(), null);
+            return savedBook;
+        }));
+    }
+
+    // The whole batch is validated against the ISBN registry up front, then accepted books are persisted in
+    // JDBC-batch-sized chunks; the persistence context is flushed and cleared after each chunk so memory
+    // stays flat however large the load is.
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<BookBatchResponse> saveBooks(List<Book> books) {
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Importing " + books.size() + " books", () -> {
+            List<String> isbns = books.stream().map(Book::getIsbn).filter(isbn -> !isBlank(isbn)).distinct().toList();
+            Map<String, Edition> editions = isbnRegistry.claimAll(isbns);
+            Map<String, Edition> newEditions = new HashMap<>();
+
+            BookBatchResponse response = new BookBatchResponse();
+            List<Book> created = new ArrayList<>();
+            int pending = 0;
+            for (int index = 0; index < books.size(); index++) {
+                Book book = books.get(index);
+                if (isBlank(book.getTitle()) || isBlank(book.getAuthor()) || isBlank(book.getIsbn())) {
+                    response.addRejected(index, REQUIRED_FIELDS_MESSAGE);
+                    continue;
+                }
+                Edition edition = editions.putIfAbsent(book.getIsbn(), Edition.of(book));
+                if (edition == null) {
+                    newEditions.put(book.getIsbn(), Edition.of(book));
+                } else if (!edition.matches(book)) {
+                    response.addRejected(index, String.format(BOOK_VALIDATION_EXCEPTION_MESSAGE, book.getIsbn(), edition.title(), edition.author(), book.getTitle(), book.getAuthor()));
+                    continue;
+                }
+
+                book.setId(null);
+                entityManager.persist(book);
+                response.addCreated(index, book.getId());
+                created.add(book);
+                if (++pending == jdbcBatchSize) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    pending = 0;
                 }
             }
+            isbnRegistry.registerAll(newEditions);
+            bookSearchIndex.addAll(created);
+            if (!created.isEmpty()) {
+                catalogVersion.bumpAfterCommit();
+                changeFeed.publishAllAfterCommit(ChangeEvent.BOOK_CREATED, created.stream().map(Book::getId).toList(), null);
+            }
+            logger.info("Imported {} of {} books", response.getCreated(), response.getReceived());
+            return response;
+        }));
+    }
 
-            return bookRepository.save(book);
-        });
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
     }
 
-    @Async
+    // Cache hits complete on the caller's thread; only misses are handed to the service executor, and concurrent
+    // misses for the same book share one query.
     public CompletableFuture<Optional<Book>> getBook(Long id) {
-        return CompletableFuture.supplyAsync(() -> bookRepository.findById(id));
+        Book cached = entityCache.get(BOOKS_CACHE, id, Book.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+        return entityCache.load(BOOKS_CACHE, id, () -> bookRepository.findById(id), serviceExecutor);
     }
 
     @Transactional
-    @Async
+    @Async(SERVICE_EXECUTOR)
     public CompletableFuture<Long> deleteBook(Long id) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!bookRepository.existsById(id)) {
-                logger.error(String.format(BOOK_MESSAGE, id));
-                throw new NotFoundException(EntityType.BOOK, id);
-            }
-            try {
-                bookRepository.deleteById(id);
-            } catch (Exception e) {
-                logger.error("Failed to delete Book with id " + id);
-                throw new RuntimeException("Failed to delete Book with id " + id, e);
-            }
-            return id;
+        Book book = bookRepository.findById(id).orElseThrow(() -> {
+            logger.error(String.format(BOOK_MESSAGE, id));
+            return new NotFoundException(EntityType.BOOK, id);
         });
+        try {
+            List<Long> borrowerIds = loanRepository.findBorrowerIdsByBookId(id);
+            borrowerIds.forEach(borrowerId -> entityCache.evictAfterCommit(BORROWERS_CACHE, borrowerId));
+            loanRepository.deleteByBookId(id);
+            bookRepository.delete(book);
+            isbnRegistry.releaseIfUnused(book.getIsbn());
+            bookSearchIndex.remove(book, bookRepository.findFirstIdByIsbn(book.getIsbn()));
+            entityCache.evictAfterCommit(BOOKS_CACHE, id);
+            catalogVersion.bumpAfterCommit();
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_DELETED, id, null);
+            libraryStats.bookDeletedAfterCommit(id, borrowerIds);
+        } catch (Exception e) {
+            logger.error("Failed to delete Book with id " + id);
+            throw new RuntimeException("Failed to delete Book with id " + id, e);
+        }
+        return CompletableFuture.completedFuture(id);
     }
 
-    @Transactional
-    @Async
+    // Borrow and return each run as a short transaction: the borrower row is locked and its version bumped, and the
+    // loan insert/delete is conditional, so concurrent requests cannot lose or duplicate a loan. Lock timeouts and
+    // version conflicts are retried a bounded number of times.
+    @Async(SERVICE_EXECUTOR)
     public CompletableFuture<String> borrowBook(Long bookId, Long borrowerId) {
-        return CompletableFuture.supplyAsync(() -> {
-            Optional<Book> bookOpt = bookRepository.findById(bookId);
-            Optional<Borrower> borrowerOpt = borrowerRepository.findById(borrowerId);
-
-            Book book = bookOpt.orElseThrow(() -> new NotFoundException(EntityType.BOOK, bookId));
-            Borrower borrower = borrowerOpt.orElseThrow(() -> new NotFoundException(EntityType.BORROWER, borrowerId));
-
-            if (borrower.getBorrowedBookIds().contains(bookId)) {
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Borrowing book " + bookId, () -> {
+            if (borrowerRepository.lockForLoanChange(borrowerId).isEmpty()) {
+                if (!bookRepository.existsById(bookId)) {
+                    throw new NotFoundException(EntityType.BOOK, bookId);
+                }
+                throw new NotFoundException(EntityType.BORROWER, borrowerId);
+            }
+            if (loanRepository.insertIfAbsent(bookId, borrowerId) == 0) {
+                if (!bookRepository.existsById(bookId)) {
+                    throw new NotFoundException(EntityType.BOOK, bookId);
+                }
                 logger.error("Book already borrowed by this member, borrowerId : {}, bookId: {}",borrowerId,bookId);
                 throw new BadRequestException("Book already borrowed by this member.");
             }
-
-            borrower.getBorrowedBookIds().add(bookId);
-            borrowerRepository.save(borrower);
+            entityCache.evictAfterCommit(BORROWERS_CACHE, borrowerId);
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_BORROWED, bookId, borrowerId);
+            libraryStats.borrowedAfterCommit(borrowerId, List.of(bookId));
             return "Book borrowed successfully.";
-        });
+        }));
+    }
+
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<List<Borrower>> getBorrowersOfBook(Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new NotFoundException(EntityType.BOOK, bookId);
+        }
+        List<Borrower> borrowers = borrowerRepository.findBorrowersOfBook(bookId);
+        if (!borrowers.isEmpty()) {
+            Map<Long, Borrower> byId = borrowers.stream().collect(Collectors.toMap(Borrower::getId, Function.identity()));
+            for (Loan loan : loanRepository.findByBorrowerIdIn(byId.keySet())) {
+                byId.get(loan.getBorrowerId()).getBorrowedBookIds().add(loan.getBookId());
+            }
+        }
+        return CompletableFuture.completedFuture(borrowers);
     }
 
-    @Async
-    public CompletableFuture<BookResponse> getAllUniqueBooks() {
-        return CompletableFuture.supplyAsync(() -> {
-            List<Book> allBooks = bookRepository.findAll();
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<BookResponse> getAllUniqueBooks(String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Page size must be between 1 and %d.", MAX_PAGE_SIZE));
+        }
+        long afterId = decodeCursor(cursor);
 
-            Set<String> seen = new HashSet<>();
-            List<Book> uniqueBooks = allBooks.stream()
-                    .filter(book -> seen.add(book.getIsbn() + "|" + book.getTitle() + "|" + book.getAuthor()))
-                    .collect(Collectors.toList());
+        // Fetch one extra row to find out whether another page follows without a second query.
+        List<Book> page = bookRepository.findDistinctBooks(afterId, Limit.of(size + 1));
+        String next = null;
+        if (page.size() > size) {
+            page = page.subList(0, size);
+            next = encodeCursor(page.get(size - 1).getId());
+        }
 
-            return new BookResponse(uniqueBooks, uniqueBooks.size());
-        });
+        return CompletableFuture.completedFuture(new BookResponse(page, isbnRegistry.countDistinctBooks(), next));
     }
 
-    @Transactional
-    @Async
-    public CompletableFuture<String> returnBook(Long bookId, Long borrowerId) {
-        return CompletableFuture.supplyAsync(() -> {
-            Optional<Borrower> borrowerOpt = borrowerRepository.findById(borrowerId);
+    // Ranked results come from the in-memory index; only the requested page is loaded from the database.
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<BookResponse> searchBooks(String query, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Page size must be between 1 and %d.", MAX_PAGE_SIZE));
+        }
+        if (BookSearchIndex.tokenize(query).isEmpty()) {
+            throw new BadRequestException("Search query must contain at least one letter or digit.");
+        }
+        long decoded = decodeCursor(cursor);
+        if (decoded < 0 || decoded > Integer.MAX_VALUE) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+        int offset = (int) decoded;
 
-            if (borrowerOpt.isPresent()) {
-                Borrower borrower = borrowerOpt.get();
+        BookSearchIndex.Hits hits = bookSearchIndex.search(query, offset, size);
+        Map<Long, Book> byId = bookRepository.findAllById(hits.ids()).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> page = hits.ids().stream().map(byId::get).filter(Objects::nonNull).toList();
+        String next = offset + size < hits.total() ? encodeCursor((long) (offset + size)) : null;
 
-                if (borrower.getBorrowedBookIds().remove(bookId)) {
-                    borrowerRepository.save(borrower);
-                    return "Book returned successfully.";
-                }
+        BookResponse response = new BookResponse(page, hits.total(), next);
+        response.setTruncated(hits.truncated());
+        return CompletableFuture.completedFuture(response);
+    }
+
+    static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    // Rows are detached as soon as they are handed to the sink so the persistence context stays empty
+    // and memory does not grow with the size of the catalog.
+    @Transactional
+    public long exportBooks(Consumer<Book> sink) {
+        long exported = 0;
+        try (Stream<Book> books = bookRepository.streamAllBy()) {
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                Book book = iterator.next();
+                sink.accept(book);
+                entityManager.detach(book);
+                exported++;
+            }
+        }
+        return exported;
+    }
+
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<String> returnBook(Long bookId, Long borrowerId) {
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Returning book " + bookId, () -> {
+            if (borrowerRepository.lockForLoanChange(borrowerId).isEmpty()) {
+                throw new NotFoundException(EntityType.BORROWER, borrowerId);
+            }
+            if (loanRepository.deleteLoan(bookId, borrowerId) == 0) {
                 logger.error("This book was not borrowed by the member, borrowerId : {}, bookId: {}",borrowerId,bookId);
                 throw new BadRequestException("This book was not borrowed by the member.");
             }
-            throw new NotFoundException(EntityType.BOOK, bookId);
-        });
+            entityCache.evictAfterCommit(BORROWERS_CACHE, borrowerId);
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_RETURNED, bookId, borrowerId);
+            libraryStats.returnedAfterCommit(borrowerId, List.of(bookId));
+            return "Book returned successfully.";
+        }));
     }
 }
@@ -1,57 +1,198 @@
 package com.example.h2.service;
 
+import com.example.h2.exception.BadRequestException;
 import com.example.h2.exception.NotFoundException;
 import com.example.h2.model.Borrower;
 import com.example.h2.model.EntityType;
+import com.example.h2.repository.BookRepository;
 import com.example.h2.repository.BorrowerRepository;
+import com.example.h2.repository.LoanRepository;
+import com.example.h2.response.ChangeEvent;
+import com.example.h2.response.LoanBatchResponse;
 import jakarta.transaction.Transactional;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import static com.example.h2.config.AsyncConfig.SERVICE_EXECUTOR;
+import static com.example.h2.config.MetricsConfig.SERVICE_TIMER;
+import static com.example.h2.config.CacheConfig.BORROWERS_CACHE;
 import static com.example.h2.exception.NotFoundException.BOOK_MESSAGE;
 
 
 @Service
+@Timed(SERVICE_TIMER)
 public class BorrowerService {
 
     private static final Logger logger = LoggerFactory.getLogger(BorrowerService.class);
 
+    public static final int MAX_LOAN_BATCH_SIZE = 100;
+
     @Autowired
     private BorrowerRepository borrowerRepository;
 
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private RetryingTransactionExecutor retryingTransactionExecutor;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private LibraryStats libraryStats;
+
+    @Autowired
+    @Qualifier(SERVICE_EXECUTOR)
+    private Executor serviceExecutor;
+
     @Transactional
-    @Async
+    @Async(SERVICE_EXECUTOR)
     public CompletableFuture<Borrower> registerBorrower(Borrower borrower) {
-        return CompletableFuture.supplyAsync(() -> borrowerRepository.save(borrower));
+        borrower.setBorrowedBookIds(new HashSet<>());
+        Borrower savedBorrower = borrowerRepository.save(borrower);
+        entityCache.putAfterCommit(BORROWERS_CACHE, savedBorrower.getId(), savedBorrower);
+        changeFeed.publishAfterCommit(ChangeEvent.BORROWER_REGISTERED, null, savedBorrower.getId());
+        return CompletableFuture.completedFuture(savedBorrower);
     }
 
     @Transactional
-    @Async
+    @Async(SERVICE_EXECUTOR)
     public CompletableFuture<Long> removeBorrower(Long id) {
-        return CompletableFuture.supplyAsync(() -> {
-            if (!borrowerRepository.existsById(id)) {
-                logger.error(String.format(BOOK_MESSAGE,id));
-                throw new NotFoundException(EntityType.BORROWER,id);
+        // Locked like a loan change, so the statistics drop the borrower's loans after any change committed before.
+        if (borrowerRepository.lockForLoanChange(id).isEmpty()) {
+            logger.error(String.format(BOOK_MESSAGE,id));
+            throw new NotFoundException(EntityType.BORROWER,id);
+        }
+        try {
+            loanRepository.deleteByBorrowerId(id);
+            borrowerRepository.deleteById(id);
+            entityCache.evictAfterCommit(BORROWERS_CACHE, id);
+            changeFeed.publishAfterCommit(ChangeEvent.BORROWER_REMOVED, null, id);
+            libraryStats.borrowerRemovedAfterCommit(id);
+        } catch (Exception e) {
+            String errorMessage = "Failed to remove Borrower with id "+ id;
+            logger.error(errorMessage);
+            throw new RuntimeException(errorMessage, e);
+        }
+        return CompletableFuture.completedFuture(id);
+    }
+
+    // Borrows a stack of books in one transaction. Book existence and existing loans are each checked with one
+    // IN query and all new loans are written by a single INSERT ... SELECT; items that cannot be borrowed are
+    // reported individually and do not fail the rest of the batch.
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<LoanBatchResponse> borrowBooks(Long borrowerId, List<Long> bookIds) {
+        List<Long> candidates = distinctIds(bookIds);
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Borrowing books for borrower " + borrowerId, () -> {
+            lockBorrower(borrowerId);
+            Set<Long> existing = new HashSet<>(bookRepository.findExistingIds(candidates));
+            Set<Long> borrowed = new HashSet<>(loanRepository.findBorrowedBookIds(borrowerId, candidates));
+            List<Long> toBorrow = candidates.stream().filter(existing::contains).filter(id -> !borrowed.contains(id)).toList();
+            if (!toBorrow.isEmpty() && loanRepository.insertAllIfAbsent(toBorrow, borrowerId) != toBorrow.size()) {
+                throw new ConcurrencyFailureException("Books of the batch changed while borrowing them");
             }
-            try {
-                borrowerRepository.deleteById(id);
-            } catch (Exception e) {
-                String errorMessage = "Failed to remove Borrower with id "+ id;
-                logger.error(errorMessage);
-                throw new RuntimeException(errorMessage, e);
+
+            LoanBatchResponse response = new LoanBatchResponse();
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i < bookIds.size(); i++) {
+                Long bookId = bookIds.get(i);
+                if (!seen.add(bookId)) {
+                    response.addRejected(i, bookId, "Duplicate book id in request.");
+                } else if (!existing.contains(bookId)) {
+                    response.addRejected(i, bookId, String.format(BOOK_MESSAGE, bookId));
+                } else if (borrowed.contains(bookId)) {
+                    response.addRejected(i, bookId, "Book already borrowed by this member.");
+                } else {
+                    response.addSucceeded(i, bookId, LoanBatchResponse.BORROWED);
+                }
+            }
+            entityCache.evictAfterCommit(BORROWERS_CACHE, borrowerId);
+            changeFeed.publishAllAfterCommit(ChangeEvent.BOOK_BORROWED, toBorrow, borrowerId);
+            libraryStats.borrowedAfterCommit(borrowerId, toBorrow);
+            return response;
+        }));
+    }
+
+    @Async(SERVICE_EXECUTOR)
+    public CompletableFuture<LoanBatchResponse> returnBooks(Long borrowerId, List<Long> bookIds) {
+        List<Long> candidates = distinctIds(bookIds);
+        return CompletableFuture.completedFuture(retryingTransactionExecutor.execute("Returning books for borrower " + borrowerId, () -> {
+            lockBorrower(borrowerId);
+            Set<Long> borrowed = new HashSet<>(loanRepository.findBorrowedBookIds(borrowerId, candidates));
+            if (!borrowed.isEmpty() && loanRepository.deleteLoans(borrowed, borrowerId) != borrowed.size()) {
+                throw new ConcurrencyFailureException("Loans of the batch changed while returning them");
             }
-            return id;
-        });
+
+            LoanBatchResponse response = new LoanBatchResponse();
+            Set<Long> seen = new HashSet<>();
+            for (int i = 0; i < bookIds.size(); i++) {
+                Long bookId = bookIds.get(i);
+                if (!seen.add(bookId)) {
+                    response.addRejected(i, bookId, "Duplicate book id in request.");
+                } else if (!borrowed.contains(bookId)) {
+                    response.addRejected(i, bookId, "This book was not borrowed by the member.");
+                } else {
+                    response.addSucceeded(i, bookId, LoanBatchResponse.RETURNED);
+                }
+            }
+            entityCache.evictAfterCommit(BORROWERS_CACHE, borrowerId);
+            changeFeed.publishAllAfterCommit(ChangeEvent.BOOK_RETURNED, borrowed, borrowerId);
+            libraryStats.returnedAfterCommit(borrowerId, borrowed);
+            return response;
+        }));
+    }
+
+    // Locks the borrower row and bumps its version, so concurrent loan changes of one borrower serialize.
+    private void lockBorrower(Long borrowerId) {
+        if (borrowerRepository.lockForLoanChange(borrowerId).isEmpty()) {
+            throw new NotFoundException(EntityType.BORROWER, borrowerId);
+        }
+    }
+
+    private static List<Long> distinctIds(List<Long> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new BadRequestException("At least one book id is required.");
+        }
+        if (bookIds.size() > MAX_LOAN_BATCH_SIZE) {
+            throw new BadRequestException(String.format("At most %d books can be borrowed or returned at once.", MAX_LOAN_BATCH_SIZE));
+        }
+        if (bookIds.contains(null)) {
+            throw new BadRequestException("Book ids must not be null.");
+        }
+        return bookIds.stream().distinct().toList();
     }
 
-    @Async
+    // Cache hits complete on the caller's thread; only misses are handed to the service executor, and concurrent
+    // misses for the same borrower share one load.
     public CompletableFuture<Optional<Borrower>> getBorrowerById(Long id) {
-        return CompletableFuture.supplyAsync(() -> borrowerRepository.findById(id));
+        Borrower cached = entityCache.get(BORROWERS_CACHE, id, Borrower.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+        return entityCache.load(BORROWERS_CACHE, id, () -> {
+            Optional<Borrower> borrower = borrowerRepository.findById(id);
+            borrower.ifPresent(b -> b.setBorrowedBookIds(new HashSet<>(loanRepository.findBookIdsByBorrowerId(id))));
+            return borrower;
+        }, serviceExecutor);
     }
 }
\ No newline at end of file
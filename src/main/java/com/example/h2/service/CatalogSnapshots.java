@@ -0,0 +1,106 @@
+package com.example.h2.service;
+
+import com.example.h2.exception.BadRequestException;
+import com.example.h2.response.ApiResponse;
+import com.example.h2.response.BookResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static com.example.h2.service.BookService.DEFAULT_PAGE_SIZE;
+import static com.example.h2.service.BookService.MAX_PAGE_SIZE;
+
+// Pages of GET /books/all kept as the encoded JSON response (and a gzipped copy), keyed by catalog version.
+// Between writes every request for a page is a map lookup and a byte copy; the first request after a write
+// rebuilds the page, and concurrent requests for the same page wait for that one build. Only pages of the default
+// size are kept, starting at the first page or at a cursor a kept page handed out, so requests with made-up cursors
+// or sizes are built on every call instead of evicting the pages everyone walks through.
+@Component
+public class CatalogSnapshots {
+
+    public static final String CACHE_NAME = "catalogSnapshots";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.catalog-snapshot.gzip:true}")
+    private boolean gzip;
+
+    private final AsyncCache<Key, Snapshot> snapshots;
+    // Where the next pages of the kept pages start; cleared with them.
+    private final Set<Long> issuedCursors = ConcurrentHashMap.newKeySet();
+    private volatile long cachedVersion;
+
+    // gzip is null when compression is off or would not make the page smaller.
+    public record Snapshot(byte[] json, byte[] gzip) {}
+
+    private record Key(long version, long afterId) {}
+
+    public CatalogSnapshots(@Value("${app.catalog-snapshot.max-pages:1000}") long maxPages, MeterRegistry meterRegistry) {
+        this.snapshots = Caffeine.newBuilder().maximumSize(maxPages).recordStats().buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, snapshots, CACHE_NAME);
+    }
+
+    public CompletableFuture<Snapshot> page(long version, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BadRequestException(String.format("Page size must be between 1 and %d.", MAX_PAGE_SIZE));
+        }
+        long afterId = BookService.decodeCursor(cursor);
+        if (version > cachedVersion) {
+            // Pages of older versions are not requested again, except by requests already in flight.
+            cachedVersion = version;
+            snapshots.synchronous().invalidateAll();
+            issuedCursors.clear();
+        }
+        if (size != DEFAULT_PAGE_SIZE || (afterId != 0 && !issuedCursors.contains(afterId))) {
+            return bookService.getAllUniqueBooks(cursor, size).thenApply(this::encode);
+        }
+        // Chained rather than joined on a service thread: the query itself runs on the service executor, and builds
+        // waiting for it there would exhaust the pool and never see their queries run.
+        return snapshots.get(new Key(version, afterId), (key, executor) -> bookService.getAllUniqueBooks(cursor, size)
+                .thenApply(page -> {
+                    if (page.getNext() != null) {
+                        issuedCursors.add(BookService.decodeCursor(page.getNext()));
+                    }
+                    return encode(page);
+                }));
+    }
+
+    private Snapshot encode(BookResponse page) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(new ApiResponse<>(HttpStatus.OK.value(), HttpStatus.OK.getReasonPhrase(), page));
+            byte[] compressed = gzip ? compress(json) : null;
+            return new Snapshot(json, compressed != null && compressed.length < json.length ? compressed : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode catalog page", e);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
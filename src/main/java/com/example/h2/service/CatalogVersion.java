@@ -0,0 +1,31 @@
+package com.example.h2.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.h2.service.TransactionCallbacks.afterCommit;
+
+// Catalog-wide version, bumped after every committed change to the set of books. Catalog ETags combine it with
+// the start time of this instance, so a tag issued before a restart never matches a tag issued after it.
+@Component
+public class CatalogVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong version = new AtomicLong();
+
+    public void bumpAfterCommit() {
+        afterCommit(version::incrementAndGet);
+    }
+
+    // Take the version before reading the data it describes: a change committing in between then costs one extra
+    // full response, instead of pinning stale data to the newer version.
+    public long current() {
+        return version.get();
+    }
+
+    // The gzip-encoded body is a different representation and so needs a strong tag of its own.
+    public String etag(long version, boolean gzip) {
+        return "\"catalog-" + epoch + "-" + version + (gzip ? "-gzip" : "") + "\"";
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.h2.service;
+
+import com.example.h2.response.ChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static com.example.h2.service.TransactionCallbacks.afterCommit;
+
+// Committed book, loan and borrower changes, numbered in commit order and kept in a bounded ring buffer so that
+// consumers of GET /events can resume after the last event they saw. Sequences restart with the instance, so
+// event ids also carry its start time and an id from before a restart is never mistaken for a current one.
+@Component
+public class ChangeFeed {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final List<Consumer<List<ChangeEvent>>> listeners = new CopyOnWriteArrayList<>();
+    private final ChangeEvent[] ring;
+    private long head;
+
+    public ChangeFeed(@Value("${app.events.buffer-size:10000}") int capacity) {
+        this.ring = new ChangeEvent[capacity];
+    }
+
+    public void publishAfterCommit(String type, Long bookId, Long borrowerId) {
+        afterCommit(() -> append(type, Collections.singletonList(bookId), borrowerId));
+    }
+
+    public void publishAllAfterCommit(String type, Collection<Long> bookIds, Long borrowerId) {
+        if (!bookIds.isEmpty()) {
+            List<Long> ids = new ArrayList<>(bookIds);
+            afterCommit(() -> append(type, ids, borrowerId));
+        }
+    }
+
+    // Listeners get the events of each commit on the committing thread and should only hand the work off.
+    public void addListener(Consumer<List<ChangeEvent>> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized long head() {
+        return head;
+    }
+
+    // The events after the given sequence, or null when some of them have already been overwritten.
+    public synchronized List<ChangeEvent> after(long sequence) {
+        if (sequence > head || sequence < head - ring.length) {
+            return null;
+        }
+        List<ChangeEvent> events = new ArrayList<>((int) (head - sequence));
+        for (long next = sequence + 1; next <= head; next++) {
+            events.add(ring[(int) (next % ring.length)]);
+        }
+        return events;
+    }
+
+    public String id(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // The sequence a Last-Event-ID refers to, or -1 when it was not issued by this instance.
+    public long sequenceOf(String eventId) {
+        if (eventId == null || !eventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void append(String type, List<Long> bookIds, Long borrowerId) {
+        long timestamp = System.currentTimeMillis();
+        List<ChangeEvent> events = new ArrayList<>(bookIds.size());
+        synchronized (this) {
+            for (Long bookId : bookIds) {
+                head++;
+                ChangeEvent event = new ChangeEvent(head, type, bookId, borrowerId, timestamp);
+                ring[(int) (head % ring.length)] = event;
+                events.add(event);
+            }
+        }
+        listeners.forEach(listener -> listener.accept(events));
+    }
+}
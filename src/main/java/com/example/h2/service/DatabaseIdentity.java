@@ -0,0 +1,29 @@
+package com.example.h2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// The id the schema migration stored in the database. It stays the same for as long as the data does, including
+// across restores of a snapshot, and changes when the database is created anew, e.g. on every start of the
+// in-memory database.
+@Component
+public class DatabaseIdentity {
+
+    private final UUID id;
+
+    @Autowired
+    public DatabaseIdentity(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate.queryForObject("SELECT id FROM database_identity", UUID.class));
+    }
+
+    public DatabaseIdentity(UUID id) {
+        this.id = id;
+    }
+
+    public UUID id() {
+        return id;
+    }
+}
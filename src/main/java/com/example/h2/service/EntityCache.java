@@ -0,0 +1,110 @@
+package com.example.h2.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static com.example.h2.service.TransactionCallbacks.afterCommit;
+
+// Read-through helper over the Spring caches. Writes are applied once the surrounding transaction commits,
+// so readers never see an entry that was rolled back; evictions also happen immediately so that nothing
+// served during the transaction outlives it.
+@Component
+public class EntityCache {
+
+    public static final String LOADS_COUNTER = "library.cache.loads";
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<Flight, CompletableFuture<?>> loads = new ConcurrentHashMap<>();
+
+    private record Flight(String cacheName, Long id) {}
+
+    public <T> T get(String cacheName, Long id, Class<T> type) {
+        return cache(cacheName).get(id, type);
+    }
+
+    // Concurrent misses for the same entry share one load on the executor. Any put or eviction of the entry
+    // detaches the load in progress: callers arriving after a write start a fresh one, and the older result is
+    // returned to its own callers but not cached.
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<Optional<T>> load(String cacheName, Long id, Supplier<Optional<T>> loader, Executor executor) {
+        Flight flight = new Flight(cacheName, id);
+        CompletableFuture<Optional<T>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> running = (CompletableFuture<Optional<T>>) loads.putIfAbsent(flight, load);
+        if (running != null) {
+            countLoad(cacheName, true);
+            return running;
+        }
+        countLoad(cacheName, false);
+        try {
+            executor.execute(() -> {
+                try {
+                    Optional<T> value = loader.get();
+                    // Checked and cached under the lock of the flight's entry, which put and evict also take
+                    // when they detach it, so a write can never land between the check and the put.
+                    loads.computeIfPresent(flight, (key, current) -> {
+                        if (current != load) {
+                            return current;
+                        }
+                        value.ifPresent(v -> cache(cacheName).put(id, v));
+                        return null;
+                    });
+                    load.complete(value);
+                } catch (Throwable e) {
+                    loads.remove(flight, load);
+                    load.completeExceptionally(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            loads.remove(flight, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+        return load;
+    }
+
+    public void put(String cacheName, Long id, Object value) {
+        loads.remove(new Flight(cacheName, id));
+        cache(cacheName).put(id, value);
+    }
+
+    public void putAfterCommit(String cacheName, Long id, Object value) {
+        afterCommit(() -> put(cacheName, id, value));
+    }
+
+    public void evictAfterCommit(String cacheName, Long id) {
+        evict(cacheName, id);
+        afterCommit(() -> evict(cacheName, id));
+    }
+
+    private void evict(String cacheName, Long id) {
+        loads.remove(new Flight(cacheName, id));
+        cache(cacheName).evict(id);
+    }
+
+    private void countLoad(String cacheName, boolean coalesced) {
+        meterRegistry.counter(LOADS_COUNTER, "cache", cacheName, "coalesced", String.valueOf(coalesced)).increment();
+    }
+
+    private Cache cache(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            throw new IllegalStateException("Cache " + cacheName + " is not configured");
+        }
+        return cache;
+    }
+}
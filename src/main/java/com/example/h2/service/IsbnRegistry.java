@@ -0,0 +1,194 @@
+package com.example.h2.service;
+
+import com.example.h2.model.Book;
+import com.example.h2.model.IsbnRecord;
+import com.example.h2.repository.IsbnRecordRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.example.h2.service.TransactionCallbacks.afterCommit;
+import static com.example.h2.service.TransactionCallbacks.afterCompletion;
+
+// Canonical ISBN -> (title, author) mapping backed by the isbn_record table. The map is warmed before the
+// application starts serving and only ever holds committed records, so lookups on the read path are a map
+// lookup; a miss falls back to a primary-key access on isbn_record. Saves and releases take a per-ISBN key lock
+// in this process until their transaction completes: saves share it, so a copy of a known ISBN is validated
+// against the map without touching isbn_record, and a release takes it exclusively, so it cannot drop a record
+// while a save that relies on it is still uncommitted.
+@Component
+public class IsbnRegistry implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(IsbnRegistry.class);
+
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+    private static final int KEY_LOCK_STRIPES = 4096;
+    private static final long KEY_LOCK_TIMEOUT_SECONDS = 10;
+
+    private final Map<String, Edition> editions = new ConcurrentHashMap<>();
+    private final ReadWriteLock[] keyLocks = Stream.generate(ReentrantReadWriteLock::new)
+            .limit(KEY_LOCK_STRIPES).toArray(ReadWriteLock[]::new);
+
+    @Autowired
+    private IsbnRecordRepository isbnRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int jdbcBatchSize;
+
+    public record Edition(String title, String author) {
+        public static Edition of(Book book) {
+            return new Edition(book.getTitle(), book.getAuthor());
+        }
+
+        public boolean matches(Book book) {
+            return title.equals(book.getTitle()) && author.equals(book.getAuthor());
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = isbnRecordRepository.streamAllColumns()) {
+                rows.forEach(row -> editions.put((String) row[0], new Edition((String) row[1], (String) row[2])));
+            }
+        });
+        logger.info("Loaded {} ISBNs in {} ms", editions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Returns the canonical edition of the book's ISBN. If the ISBN is new, the book's own title and author
+    // become canonical; a concurrent registration of the same ISBN surfaces as a duplicate key and is retried.
+    public Edition claim(Book book) {
+        lockUntilCompletion(List.of(book.getIsbn()), ReadWriteLock::readLock);
+        Edition known = editions.get(book.getIsbn());
+        if (known != null) {
+            return known;
+        }
+        Edition proposed = Edition.of(book);
+        if (isbnRecordRepository.insertIfAbsent(book.getIsbn(), proposed.title(), proposed.author()) == 1) {
+            afterCommit(() -> editions.putIfAbsent(book.getIsbn(), proposed));
+            return proposed;
+        }
+        // Registered by a transaction that committed after the map lookup.
+        IsbnRecord record = isbnRecordRepository.findById(book.getIsbn()).orElseThrow(
+                () -> new ConcurrencyFailureException("ISBN " + book.getIsbn() + " was released concurrently"));
+        Edition edition = new Edition(record.getTitle(), record.getAuthor());
+        editions.putIfAbsent(book.getIsbn(), edition);
+        return edition;
+    }
+
+    // Batch counterpart of claim: returns the editions of the ISBNs that are already registered and keeps them from
+    // being released until the batch completes. ISBNs without a record are left to registerAll.
+    public Map<String, Edition> claimAll(Collection<String> isbns) {
+        lockUntilCompletion(isbns, ReadWriteLock::readLock);
+        return resolveAll(isbns);
+    }
+
+    // Resolves many ISBNs at once: map hits first, then one primary-key IN query per chunk for the rest.
+    public Map<String, Edition> resolveAll(Collection<String> isbns) {
+        Map<String, Edition> resolved = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String isbn : isbns) {
+            Edition edition = editions.get(isbn);
+            if (edition != null) {
+                resolved.put(isbn, edition);
+            } else {
+                misses.add(isbn);
+            }
+        }
+        for (int from = 0; from < misses.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = misses.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, misses.size()));
+            for (IsbnRecord record : isbnRecordRepository.findAllById(chunk)) {
+                Edition edition = new Edition(record.getTitle(), record.getAuthor());
+                editions.put(record.getIsbn(), edition);
+                resolved.put(record.getIsbn(), edition);
+            }
+        }
+        return resolved;
+    }
+
+    // Map lookup only, for read paths that must not query the database; null for an ISBN without a committed record.
+    public Edition known(String isbn) {
+        return editions.get(isbn);
+    }
+
+    // Registers ISBNs that claimAll did not find, in JDBC batches.
+    public void registerAll(Map<String, Edition> newEditions) {
+        int pending = 0;
+        for (Map.Entry<String, Edition> entry : newEditions.entrySet()) {
+            entityManager.persist(new IsbnRecord(entry.getKey(), entry.getValue().title(), entry.getValue().author()));
+            if (++pending == jdbcBatchSize) {
+                entityManager.flush();
+                entityManager.clear();
+                pending = 0;
+            }
+        }
+        afterCommit(() -> newEditions.forEach(editions::putIfAbsent));
+    }
+
+    // Drops the canonical record once the last copy of the ISBN is gone, so the ISBN can be reused. The exclusive key
+    // lock waits for saves of the ISBN to complete, so the NOT EXISTS check sees their books.
+    public void releaseIfUnused(String isbn) {
+        lockUntilCompletion(List.of(isbn), ReadWriteLock::writeLock);
+        if (isbnRecordRepository.deleteIfUnused(isbn) == 1) {
+            afterCommit(() -> editions.remove(isbn));
+        }
+    }
+
+    // Takes the key locks of the ISBNs in stripe order and holds them until the surrounding transaction completes.
+    // A lock that cannot be had in time surfaces like a row lock timeout, so the transaction is retried.
+    private void lockUntilCompletion(Collection<String> isbns, Function<ReadWriteLock, Lock> mode) {
+        int[] stripes = isbns.stream().mapToInt(isbn -> Math.floorMod(isbn.hashCode(), KEY_LOCK_STRIPES))
+                .distinct().sorted().toArray();
+        List<Lock> held = new ArrayList<>(stripes.length);
+        try {
+            for (int stripe : stripes) {
+                Lock lock = mode.apply(keyLocks[stripe]);
+                if (!lock.tryLock(KEY_LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new ConcurrencyFailureException("Timed out waiting for the ISBN lock");
+                }
+                held.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            held.forEach(Lock::unlock);
+            throw new IllegalStateException("Interrupted while waiting for the ISBN lock", e);
+        } catch (RuntimeException e) {
+            held.forEach(Lock::unlock);
+            throw e;
+        }
+        afterCompletion(() -> held.forEach(Lock::unlock));
+    }
+
+    // Number of distinct books on both the JPA and the reactive read path: each committed ISBN has exactly one
+    // canonical title and author, so there is one (isbn, title, author) group per record.
+    public long countDistinctBooks() {
+        return editions.size();
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.h2.service;
+
+import com.example.h2.exception.BadRequestException;
+import com.example.h2.model.Book;
+import com.example.h2.repository.BookRepository;
+import com.example.h2.repository.LoanRepository;
+import com.example.h2.response.StatsResponse;
+import com.example.h2.response.TitleStatsResponse;
+import com.example.h2.service.IsbnRegistry.Edition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static com.example.h2.config.CacheConfig.BOOKS_CACHE;
+import static com.example.h2.service.TransactionCallbacks.aroundCommit;
+
+// Loan statistics behind the /stats endpoints, kept in memory and updated after every committed borrow, return
+// and delete, so reads never query the database. Each title keeps the title and author its ISBN had when it was last
+// borrowed; titles without borrows are looked up in the ISBN registry's map. Per-title counters are LongAdders: a
+// popular title is updated by many requests at once. The state is built once at startup from the loan table, with
+// all-time borrow counts taken from the loan journal when it is enabled.
+//
+// Changes of one borrower are applied in the order their transactions committed. Each change takes its place in the
+// borrower's queue just before committing and is applied once it and every change ahead of it have completed; a
+// rolled back change is skipped. Borrows, returns and borrower removals still hold the borrower's row lock at that
+// point, so their queue order is their commit order. Applying each change as its own commit callback runs would let
+// a return overtake the borrow it undoes and leave a phantom loan.
+@Component
+public class LibraryStats implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(LibraryStats.class);
+
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private IsbnRegistry isbnRegistry;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private ObjectProvider<LoanJournal> loanJournal;
+
+    @Autowired
+    private DatabaseIdentity databaseIdentity;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<String, Title> titles = new ConcurrentHashMap<>();
+    // Current loans, borrower id -> book id -> ISBN, so returns and removals know which titles to count down.
+    private final Map<Long, Map<Long, String>> loansByBorrower = new ConcurrentHashMap<>();
+    // Changes waiting for a change of the same borrower that committed before them; only borrowers with some.
+    private final Map<Long, Deque<PendingChange>> pendingByBorrower = new ConcurrentHashMap<>();
+    private final LongAdder loans = new LongAdder();
+    private final LongAdder borrows = new LongAdder();
+    private final TopTitles popular;
+
+    private static final class Title {
+        private final LongAdder borrows = new LongAdder();
+        private final LongAdder onLoan = new LongAdder();
+        private volatile Edition edition;
+    }
+
+    private static final class PendingChange {
+        private Runnable change;
+        private boolean completed;
+    }
+
+    public LibraryStats(@Value("${app.stats.top-k:100}") int topK) {
+        this.popular = new TopTitles(topK);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = loanRepository.streamAllWithIsbn()) {
+                rows.forEach(row -> addLoan((Long) row[0], (Long) row[1], (String) row[2]));
+            }
+        });
+        Map<String, Long> journalBorrows = journalBorrowsByIsbn();
+        titles.forEach((isbn, title) -> journalBorrows.merge(isbn, title.onLoan.sum(), Math::max));
+        journalBorrows.forEach((isbn, count) -> {
+            titles.computeIfAbsent(isbn, key -> new Title()).borrows.add(count);
+            borrows.add(count);
+            popular.offer(isbn, count);
+        });
+        isbnRegistry.resolveAll(titles.keySet()).forEach((isbn, edition) -> titles.get(isbn).edition = edition);
+        logger.info("Loaded statistics of {} loans and {} titles in {} ms", loans.sum(), titles.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ISBNs are resolved inside the transaction, from the book cache where possible and otherwise with one query,
+    // and so are their editions, which the titles keep for the read side.
+    public void borrowedAfterCommit(Long borrowerId, Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Map<Long, String> isbns = isbnsOf(bookIds);
+        Map<String, Edition> editions = isbnRegistry.resolveAll(new HashSet<>(isbns.values()));
+        inCommitOrder(borrowerId, () -> isbns.forEach((bookId, isbn) -> {
+            if (addLoan(borrowerId, bookId, isbn)) {
+                Title title = titles.get(isbn);
+                title.edition = editions.getOrDefault(isbn, title.edition);
+                title.borrows.increment();
+                borrows.increment();
+                popular.offer(isbn, title.borrows.sum());
+            }
+        }));
+    }
+
+    public void returnedAfterCommit(Long borrowerId, Collection<Long> bookIds) {
+        List<Long> ids = List.copyOf(bookIds);
+        inCommitOrder(borrowerId, () -> ids.forEach(bookId -> removeLoan(borrowerId, bookId)));
+    }
+
+    // A book delete does not lock the borrowers. It holds the row locks of the loans it removed instead, so no return
+    // of those loans can commit in between, and removing a loan that is no longer counted changes nothing.
+    public void bookDeletedAfterCommit(Long bookId, Collection<Long> borrowerIds) {
+        borrowerIds.forEach(borrowerId -> inCommitOrder(borrowerId, () -> removeLoan(borrowerId, bookId)));
+    }
+
+    public void borrowerRemovedAfterCommit(Long borrowerId) {
+        inCommitOrder(borrowerId, () -> {
+            Map<Long, String> books = loansByBorrower.remove(borrowerId);
+            if (books != null) {
+                books.values().forEach(isbn -> titles.get(isbn).onLoan.decrement());
+                loans.add(-books.size());
+            }
+        });
+    }
+
+    public StatsResponse summary() {
+        return new StatsResponse(loans.sum(), loansByBorrower.size(), borrows.sum());
+    }
+
+    public List<TitleStatsResponse> mostBorrowed(int limit) {
+        if (limit < 1 || limit > popular.capacity) {
+            throw new BadRequestException(String.format("Limit must be between 1 and %d.", popular.capacity));
+        }
+        return popular.isbns().stream()
+                .map(this::response)
+                .sorted(Comparator.comparingLong(TitleStatsResponse::getBorrows).reversed().thenComparing(TitleStatsResponse::getIsbn))
+                .limit(limit)
+                .toList();
+    }
+
+    public TitleStatsResponse title(String isbn) {
+        if (!titles.containsKey(isbn) && isbnRegistry.known(isbn) == null) {
+            throw new BadRequestException(String.format("No book with ISBN %s.", isbn));
+        }
+        return response(isbn);
+    }
+
+    private TitleStatsResponse response(String isbn) {
+        Title title = titles.get(isbn);
+        Edition edition = title != null && title.edition != null ? title.edition : isbnRegistry.known(isbn);
+        return new TitleStatsResponse(isbn, edition == null ? null : edition.title(), edition == null ? null : edition.author(),
+                title == null ? 0 : title.borrows.sum(), title == null ? 0 : title.onLoan.sum());
+    }
+
+    private void inCommitOrder(Long borrowerId, Runnable change) {
+        PendingChange pending = new PendingChange();
+        aroundCommit(
+                () -> pendingByBorrower.compute(borrowerId, (id, queue) -> {
+                    Deque<PendingChange> changes = queue == null ? new ArrayDeque<>() : queue;
+                    changes.add(pending);
+                    return changes;
+                }),
+                committed -> pendingByBorrower.computeIfPresent(borrowerId, (id, queue) -> {
+                    pending.change = committed ? change : null;
+                    pending.completed = true;
+                    while (!queue.isEmpty() && queue.peek().completed) {
+                        Runnable next = queue.poll().change;
+                        if (next != null) {
+                            next.run();
+                        }
+                    }
+                    return queue.isEmpty() ? null : queue;
+                }));
+    }
+
+    // Returns false when the loan was already counted.
+    private boolean addLoan(Long borrowerId, Long bookId, String isbn) {
+        boolean[] added = new boolean[1];
+        loansByBorrower.compute(borrowerId, (id, books) -> {
+            Map<Long, String> loaned = books == null ? new HashMap<>() : books;
+            added[0] = loaned.putIfAbsent(bookId, isbn) == null;
+            return loaned;
+        });
+        if (added[0]) {
+            titles.computeIfAbsent(isbn, key -> new Title()).onLoan.increment();
+            loans.increment();
+        }
+        return added[0];
+    }
+
+    private void removeLoan(Long borrowerId, Long bookId) {
+        loansByBorrower.computeIfPresent(borrowerId, (id, books) -> {
+            String isbn = books.remove(bookId);
+            if (isbn != null) {
+                titles.get(isbn).onLoan.decrement();
+                loans.decrement();
+            }
+            return books.isEmpty() ? null : books;
+        });
+    }
+
+    private Map<Long, String> isbnsOf(Collection<Long> bookIds) {
+        Map<Long, String> isbns = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            Book cached = entityCache.get(BOOKS_CACHE, bookId, Book.class);
+            if (cached != null) {
+                isbns.put(bookId, cached.getIsbn());
+            } else {
+                misses.add(bookId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            bookRepository.findIsbns(misses).forEach(row -> isbns.put((Long) row[0], (String) row[1]));
+        }
+        return isbns;
+    }
+
+    // Borrows per ISBN recorded in the loan journal; books deleted since then are left out, and so is the history
+    // of other databases, whose book ids say nothing about the books in this one.
+    private Map<String, Long> journalBorrowsByIsbn() {
+        Map<String, Long> byIsbn = new HashMap<>();
+        LoanJournal journal = loanJournal.getIfAvailable();
+        if (journal == null) {
+            return byIsbn;
+        }
+        Map<Long, Long> byBook = new HashMap<>();
+        UUID database = databaseIdentity.id();
+        boolean[] current = new boolean[1];
+        try {
+            journal.reader().replay(1, entry -> {
+                if (entry.type() == LoanJournal.Type.DATABASE) {
+                    current[0] = entry.database().equals(database);
+                } else if (current[0] && entry.type() == LoanJournal.Type.BORROWED) {
+                    byBook.merge(entry.bookId(), 1L, Long::sum);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the loan journal", e);
+        }
+        List<Long> bookIds = new ArrayList<>(byBook.keySet());
+        for (int from = 0; from < bookIds.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Long> chunk = bookIds.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, bookIds.size()));
+            bookRepository.findIsbns(chunk).forEach(row -> byIsbn.merge((String) row[1], byBook.get((Long) row[0]), Long::sum));
+        }
+        return byIsbn;
+    }
+
+    // The titles with the most borrows. Borrow counts only grow, so offering every new count keeps the set exact;
+    // the threshold lets counts that cannot make it skip the lock.
+    private static final class TopTitles {
+        private final int capacity;
+        private final Map<String, Long> counts = new ConcurrentHashMap<>();
+        private volatile long threshold;
+
+        private TopTitles(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void offer(String isbn, long count) {
+            if (count <= threshold && !counts.containsKey(isbn)) {
+                return;
+            }
+            synchronized (this) {
+                Long current = counts.get(isbn);
+                if (current != null) {
+                    if (count <= current) {
+                        return;
+                    }
+                } else if (counts.size() >= capacity) {
+                    if (count <= threshold) {
+                        return;
+                    }
+                    counts.entrySet().stream().min(Map.Entry.comparingByValue())
+                            .ifPresent(lowest -> counts.remove(lowest.getKey()));
+                }
+                counts.put(isbn, count);
+                if (counts.size() >= capacity) {
+                    threshold = counts.values().stream().mapToLong(Long::longValue).min().orElse(0);
+                }
+            }
+        }
+
+        private List<String> isbns() {
+            return List.copyOf(counts.keySet());
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.h2.service;
+
+import com.example.h2.response.ChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Append-only history of loan changes in memory-mapped segment files, for analytics that need more than the
+// current loans. Committed changes reach it through the change feed and are written in batches by one writer
+// thread, so requests never wait on the journal; when the queue is full, entries are dropped and counted
+// rather than slowing down writes. LoanJournalReader replays the segments. The directory belongs to one journal
+// at a time: an exclusive lock on its lock file is held until close, and a second instance fails to start.
+// Book and borrower ids only mean something in the database that issued them, so every start first writes a
+// DATABASE record with the DatabaseIdentity the following records belong to.
+@Component
+@ConditionalOnProperty(name = "app.journal.enabled", havingValue = "true")
+public class LoanJournal {
+    private static final Logger logger = LoggerFactory.getLogger(LoanJournal.class);
+
+    // checksum, type (ints), sequence, timestamp, book id, borrower id (longs, 0 when absent). The checksum is a CRC32C
+    // of the rest of the record; the data ends at the first record it does not match. DATABASE records carry the
+    // database id in place of the book and borrower ids.
+    static final int RECORD_SIZE = 40;
+    static final String SEGMENT_PREFIX = "loans-v2-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final String LOCK_FILE = "journal.lock";
+    private static final int BATCH_SIZE = 1024;
+
+    public enum Type {
+        BORROWED, RETURNED, BOOK_DELETED, BORROWER_REMOVED, DATABASE;
+
+        int code() {
+            return ordinal() + 1;
+        }
+
+        static Type of(int code) {
+            return values()[code - 1];
+        }
+    }
+
+    public record Entry(long sequence, Type type, long timestamp, Long bookId, Long borrowerId) {
+
+        // The database the entries after a DATABASE entry belong to.
+        public UUID database() {
+            return new UUID(bookId == null ? 0 : bookId, borrowerId == null ? 0 : borrowerId);
+        }
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long forceIntervalMillis;
+    private final BlockingQueue<ChangeEvent> queue;
+    private final Counter appended;
+    private final Counter dropped;
+    private final FileLock lock;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private long nextSequence;
+
+    public LoanJournal(ChangeFeed changeFeed, DatabaseIdentity database, MeterRegistry meterRegistry,
+                       @Value("${app.journal.dir:./journal}") Path directory,
+                       @Value("${app.journal.segment-size:64MB}") DataSize segmentSize,
+                       @Value("${app.journal.queue-capacity:65536}") int queueCapacity,
+                       @Value("${app.journal.force-interval:1s}") Duration forceInterval) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(segmentSize.toBytes() / RECORD_SIZE, 1) * RECORD_SIZE;
+        this.forceIntervalMillis = forceInterval.toMillis();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.appended = meterRegistry.counter("library.journal.appended");
+        this.dropped = meterRegistry.counter("library.journal.dropped");
+        Gauge.builder("library.journal.queued", queue, BlockingQueue::size).register(meterRegistry);
+
+        Files.createDirectories(directory);
+        lock = lock(directory);
+        try {
+            recover();
+            append(Type.DATABASE, System.currentTimeMillis(), database.id().getMostSignificantBits(), database.id().getLeastSignificantBits());
+            segment.force();
+        } catch (IOException | RuntimeException e) {
+            release();
+            throw e;
+        }
+        changeFeed.addListener(this::enqueue);
+        writer = new Thread(this::run, "loan-journal");
+        writer.start();
+        logger.info("Loan journal in {} continues at sequence {}", directory.toAbsolutePath(), nextSequence);
+    }
+
+    public LoanJournalReader reader() {
+        return new LoanJournalReader(directory);
+    }
+
+    // Stops accepting entries, writes what is queued and forces it to disk.
+    @PreDestroy
+    public void close() throws InterruptedException, IOException {
+        running = false;
+        try {
+            writer.join();
+        } finally {
+            release();
+        }
+    }
+
+    private void enqueue(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            if (typeOf(event) != null && (!running || !queue.offer(event))) {
+                dropped.increment();
+            }
+        }
+    }
+
+    private void run() {
+        List<ChangeEvent> batch = new ArrayList<>(BATCH_SIZE);
+        long lastForce = System.currentTimeMillis();
+        boolean dirty = false;
+        while (running || !queue.isEmpty()) {
+            try {
+                ChangeEvent first = queue.poll(forceIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                    batch.forEach(this::append);
+                    appended.increment(batch.size());
+                    batch.clear();
+                    dirty = true;
+                }
+                if (dirty && (!running || System.currentTimeMillis() - lastForce >= forceIntervalMillis)) {
+                    segment.force();
+                    lastForce = System.currentTimeMillis();
+                    dirty = false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Failed to write {} loan journal entries", batch.size(), e);
+                dropped.increment(batch.size());
+                batch.clear();
+            }
+        }
+        if (dirty) {
+            segment.force();
+        }
+    }
+
+    private void append(ChangeEvent event) {
+        append(typeOf(event), event.getTimestamp(), event.getBookId() == null ? 0 : event.getBookId(),
+                event.getBorrowerId() == null ? 0 : event.getBorrowerId());
+    }
+
+    private void append(Type type, long timestamp, long bookId, long borrowerId) {
+        if (segment.remaining() < RECORD_SIZE) {
+            segment.force();
+            MappedByteBuffer full = segment;
+            openSegment(segmentIndex + 1, segmentSize);
+            LoanJournalReader.unmap(full);
+        }
+        int position = segment.position();
+        segment.putInt(position + 4, type.code());
+        segment.putLong(position + 8, nextSequence++);
+        segment.putLong(position + 16, timestamp);
+        segment.putLong(position + 24, bookId);
+        segment.putLong(position + 32, borrowerId);
+        // A reader of the live segment, or a restart after a crash, stops at a record whose checksum does not match,
+        // so a half-written record is never read.
+        segment.putInt(position, LoanJournalReader.checksum(segment, position));
+        segment.position(position + RECORD_SIZE);
+    }
+
+    private static Type typeOf(ChangeEvent event) {
+        return switch (event.getType()) {
+            case ChangeEvent.BOOK_BORROWED -> Type.BORROWED;
+            case ChangeEvent.BOOK_RETURNED -> Type.RETURNED;
+            case ChangeEvent.BOOK_DELETED -> Type.BOOK_DELETED;
+            case ChangeEvent.BORROWER_REMOVED -> Type.BORROWER_REMOVED;
+            default -> null;
+        };
+    }
+
+    // Continues after the last complete record of the newest segment, overwriting a record torn by a crash.
+    private void recover() throws IOException {
+        List<Path> segments = LoanJournalReader.segments(directory);
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            openSegment(1, segmentSize);
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        openSegment(LoanJournalReader.indexOf(last), Math.max(Files.size(last), RECORD_SIZE));
+        while (segment.remaining() >= RECORD_SIZE && LoanJournalReader.isRecord(segment, segment.position())) {
+            segment.position(segment.position() + RECORD_SIZE);
+        }
+        nextSequence = new LoanJournalReader(directory).lastSequence() + 1;
+    }
+
+    private static FileLock lock(Path directory) throws IOException {
+        Path file = directory.resolve(LOCK_FILE);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Held by another journal in this JVM.
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        throw new IllegalStateException(String.format("Loan journal directory %s is in use by another instance.", directory.toAbsolutePath()));
+    }
+
+    private void release() throws IOException {
+        if (segment != null) {
+            LoanJournalReader.unmap(segment);
+            segment = null;
+        }
+        try (FileChannel channel = lock.channel()) {
+            lock.release();
+        }
+    }
+
+    private void openSegment(long index, long size) {
+        Path file = directory.resolve(LoanJournalReader.segmentName(index));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            segmentIndex = index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open loan journal segment " + file, e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.h2.service;
+
+import com.example.h2.service.LoanJournal.Entry;
+import com.example.h2.service.LoanJournal.Type;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.example.h2.service.LoanJournal.RECORD_SIZE;
+import static com.example.h2.service.LoanJournal.SEGMENT_PREFIX;
+import static com.example.h2.service.LoanJournal.SEGMENT_SUFFIX;
+
+// Replays the loan journal in sequence order. Segments are mapped read-only and scanned in place, so rebuilding
+// an aggregate runs at the speed of the disk, and it is safe to read while the application keeps appending.
+// Each mapping is released as soon as its segment has been scanned rather than whenever it is garbage collected.
+public class LoanJournalReader {
+
+    private static final sun.misc.Unsafe UNSAFE = unsafe();
+
+    private final Path directory;
+
+    public LoanJournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    // Hands every entry from the given sequence on to the consumer and returns how many there were.
+    // Segments that end before that sequence are skipped without being read.
+    public long replay(long fromSequence, Consumer<Entry> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        long replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue;
+            }
+            MappedByteBuffer segment = map(segments.get(i));
+            try {
+                for (int position = 0; position + RECORD_SIZE <= segment.limit() && isRecord(segment, position); position += RECORD_SIZE) {
+                    long sequence = segment.getLong(position + 8);
+                    if (sequence >= fromSequence) {
+                        consumer.accept(read(segment, position));
+                        replayed++;
+                    }
+                }
+            } finally {
+                unmap(segment);
+            }
+        }
+        return replayed;
+    }
+
+    // The sequence of the newest entry, or 0 when the journal is empty.
+    public long lastSequence() throws IOException {
+        List<Path> segments = segments(directory);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            MappedByteBuffer segment = map(segments.get(i));
+            try {
+                int position = 0;
+                while (position + RECORD_SIZE <= segment.limit() && isRecord(segment, position)) {
+                    position += RECORD_SIZE;
+                }
+                if (position > 0) {
+                    return segment.getLong(position - RECORD_SIZE + 8);
+                }
+            } finally {
+                unmap(segment);
+            }
+        }
+        return 0;
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(LoanJournalReader::indexOf))
+                    .toList();
+        }
+    }
+
+    // Whether a complete record starts at the position: a type is set and the checksum matches.
+    static boolean isRecord(ByteBuffer segment, int position) {
+        return segment.getInt(position + 4) != 0 && segment.getInt(position) == checksum(segment, position);
+    }
+
+    // CRC32C of the record at the position, without its leading checksum field.
+    static int checksum(ByteBuffer segment, int position) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(position + 4, RECORD_SIZE - 4));
+        return (int) crc.getValue();
+    }
+
+    // Releases the mapping right away; the buffer must not be used afterwards.
+    static void unmap(MappedByteBuffer buffer) {
+        UNSAFE.invokeCleaner(buffer);
+    }
+
+    static String segmentName(long index) {
+        return String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+    }
+
+    static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long firstSequence(Path segment) throws IOException {
+        MappedByteBuffer buffer = map(segment);
+        try {
+            return buffer.limit() >= RECORD_SIZE && isRecord(buffer, 0) ? buffer.getLong(8) : Long.MAX_VALUE;
+        } finally {
+            unmap(buffer);
+        }
+    }
+
+    private static Entry read(MappedByteBuffer segment, int position) {
+        long bookId = segment.getLong(position + 24);
+        long borrowerId = segment.getLong(position + 32);
+        return new Entry(segment.getLong(position + 8), Type.of(segment.getInt(position + 4)), segment.getLong(position + 16),
+                bookId == 0 ? null : bookId, borrowerId == 0 ? null : borrowerId);
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static sun.misc.Unsafe unsafe() {
+        try {
+            Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (sun.misc.Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.h2.service;
+
+import com.example.h2.exception.BadRequestException;
+import com.example.h2.exception.NotFoundException;
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.model.EntityType;
+import com.example.h2.response.BookResponse;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.example.h2.config.CacheConfig.BOOKS_CACHE;
+import static com.example.h2.config.CacheConfig.BORROWERS_CACHE;
+import static com.example.h2.service.BookService.MAX_PAGE_SIZE;
+
+// Read-only counterpart of BookService and BorrowerService on R2DBC. It answers from the request-level caches of
+// the JPA path when they hold the entry, but never fills them: a read here runs outside any transaction and
+// could cache what a write committing right after it has already evicted. It answers with the same shapes as the
+// blocking endpoints.
+@Service
+@ConditionalOnProperty(name = "app.reactive.enabled", havingValue = "true")
+public class ReactiveReadService {
+
+    // The borrower and its loans in one statement, so the version always matches the loans read with it.
+    private static final String BORROWER_WITH_LOANS = "SELECT b.id, b.name, b.email_address, b.version, l.book_id " +
+            "FROM borrower b LEFT JOIN loan l ON l.borrower_id = b.id WHERE b.id = :id";
+
+    private static final String DISTINCT_BOOKS = "SELECT id, title, author, isbn, version FROM book b WHERE b.id > :afterId " +
+            "AND NOT EXISTS (SELECT 1 FROM book c WHERE c.isbn = b.isbn AND c.title = b.title AND c.author = b.author AND c.id < b.id) " +
+            "ORDER BY b.id LIMIT :limit";
+
+    @Autowired
+    private DatabaseClient reactiveDatabaseClient;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private IsbnRegistry isbnRegistry;
+
+    public Mono<Book> getBook(Long id) {
+        Book cached = entityCache.get(BOOKS_CACHE, id, Book.class);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveDatabaseClient.sql("SELECT id, title, author, isbn, version FROM book WHERE id = :id")
+                .bind("id", id)
+                .map(ReactiveReadService::toBook)
+                .one()
+                .switchIfEmpty(Mono.error(() -> new NotFoundException(EntityType.BOOK, id)));
+    }
+
+    // Every ISBN has exactly one canonical title and author, so the number of distinct books is the number of
+    // registered ISBNs and needs no COUNT over the book table.
+    public Mono<BookResponse> getAllUniqueBooks(String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return Mono.error(new BadRequestException(String.format("Page size must be between 1 and %d.", MAX_PAGE_SIZE)));
+        }
+        return Mono.fromCallable(() -> BookService.decodeCursor(cursor))
+                .flatMap(afterId -> distinctBooks(afterId, size + 1))
+                .map(page -> {
+                    String next = null;
+                    if (page.size() > size) {
+                        page = page.subList(0, size);
+                        next = BookService.encodeCursor(page.get(size - 1).getId());
+                    }
+                    return new BookResponse(page, isbnRegistry.countDistinctBooks(), next);
+                });
+    }
+
+    // The whole distinct catalog after the cursor, in pages of MAX_PAGE_SIZE. The next page is only queried once
+    // the subscriber has consumed the previous one, so a slow client holds no more than a page in memory.
+    public Flux<List<Book>> streamUniqueBooks(String cursor) {
+        return Mono.fromCallable(() -> BookService.decodeCursor(cursor))
+                .flatMap(afterId -> distinctBooks(afterId, MAX_PAGE_SIZE))
+                .expand(page -> page.size() < MAX_PAGE_SIZE
+                        ? Mono.empty()
+                        : distinctBooks(page.get(page.size() - 1).getId(), MAX_PAGE_SIZE))
+                .filter(page -> !page.isEmpty());
+    }
+
+    public Mono<Borrower> getBorrower(Long id) {
+        Borrower cached = entityCache.get(BORROWERS_CACHE, id, Borrower.class);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveDatabaseClient.sql(BORROWER_WITH_LOANS)
+                .bind("id", id)
+                .map(row -> new BorrowerRow(toBorrower(row), row.get("book_id", Long.class)))
+                .all()
+                .collectList()
+                .filter(rows -> !rows.isEmpty())
+                .map(rows -> {
+                    Borrower borrower = rows.get(0).borrower();
+                    borrower.setBorrowedBookIds(rows.stream().map(BorrowerRow::bookId).filter(Objects::nonNull)
+                            .collect(Collectors.toCollection(HashSet::new)));
+                    return borrower;
+                })
+                .switchIfEmpty(Mono.error(() -> new NotFoundException(EntityType.BORROWER, id)));
+    }
+
+    private record BorrowerRow(Borrower borrower, Long bookId) {}
+
+    private Mono<List<Book>> distinctBooks(long afterId, int limit) {
+        return reactiveDatabaseClient.sql(DISTINCT_BOOKS)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(ReactiveReadService::toBook)
+                .all()
+                .collectList();
+    }
+
+    private static Book toBook(Readable row) {
+        Book book = new Book();
+        book.setId(row.get("id", Long.class));
+        book.setTitle(row.get("title", String.class));
+        book.setAuthor(row.get("author", String.class));
+        book.setIsbn(row.get("isbn", String.class));
+        book.setVersion(row.get("version", Long.class));
+        return book;
+    }
+
+    private static Borrower toBorrower(Readable row) {
+        Borrower borrower = new Borrower();
+        borrower.setId(row.get("id", Long.class));
+        borrower.setName(row.get("name", String.class));
+        borrower.setEmailAddress(row.get("email_address", String.class));
+        borrower.setVersion(row.get("version", Long.class));
+        return borrower;
+    }
+}
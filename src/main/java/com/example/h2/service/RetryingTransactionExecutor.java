@@ -0,0 +1,58 @@
+package com.example.h2.service;
+
+import com.example.h2.exception.ConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Runs a unit of work in its own transaction and retries it a bounded number of times when it loses
+// a lock, version or unique-key race. Business exceptions are not retried.
+@Component
+public class RetryingTransactionExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(RetryingTransactionExecutor.class);
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.retry.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.retry.backoff-ms:5}")
+    private long backoffMillis;
+
+    public RetryingTransactionExecutor(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> T execute(String operation, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException | DuplicateKeyException e) {
+                if (attempt >= maxAttempts) {
+                    logger.error("{} still conflicting after {} attempts", operation, attempt);
+                    throw new ConflictException(operation + " conflicted with a concurrent update, please retry.", e);
+                }
+                logger.debug("{} conflicted on attempt {}, retrying", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long delay = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", e);
+        }
+    }
+}
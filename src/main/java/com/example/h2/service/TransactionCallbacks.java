@@ -0,0 +1,60 @@
+package com.example.h2.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {}
+
+    // Runs the action once the surrounding transaction commits, or right away when there is none.
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Runs the action once the surrounding transaction has committed or rolled back, or right away when there is none.
+    static void afterCompletion(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    // Runs beforeCommit just before the surrounding transaction commits, while it still holds its locks, and
+    // afterCompletion with whether it committed. Without a transaction both run right away.
+    static void aroundCommit(Runnable beforeCommit, Consumer<Boolean> afterCompletion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            beforeCommit.run();
+            afterCompletion.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                beforeCommit.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                afterCompletion.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+}
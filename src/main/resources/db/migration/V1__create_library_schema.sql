@@ -0,0 +1,40 @@
+-- Book ids come from a pooled sequence (allocationSize 100) so inserts can be JDBC-batched.
+CREATE SEQUENCE book_seq START WITH 1 INCREMENT BY 100;
+
+CREATE TABLE book (
+    id BIGINT NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    isbn VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Covers the distinct-book listing and ISBN lookups without touching the table.
+CREATE INDEX idx_book_isbn_title_author ON book (isbn, title, author);
+
+CREATE TABLE borrower (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    name VARCHAR(255) NOT NULL,
+    email_address VARCHAR(255) NOT NULL,
+    version BIGINT,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE loan (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    book_id BIGINT NOT NULL,
+    borrower_id BIGINT NOT NULL,
+    borrowed_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_loan_borrower_book UNIQUE (borrower_id, book_id)
+);
+
+CREATE INDEX idx_loan_book ON loan (book_id);
+
+-- Canonical title and author per ISBN.
+CREATE TABLE isbn_record (
+    isbn VARCHAR(255) NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    PRIMARY KEY (isbn)
+);
@@ -0,0 +1,2 @@
+-- Optimistic-lock version of a book, also used in its ETag.
+ALTER TABLE book ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
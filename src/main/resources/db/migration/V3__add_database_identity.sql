@@ -0,0 +1,8 @@
+-- Random id of this database, generated once when the schema is created. The loan journal tags its history with it,
+-- so a journal that outlives an in-memory database is not replayed against the ids of a new one.
+CREATE TABLE database_identity (
+    id UUID NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO database_identity (id) VALUES (RANDOM_UUID());
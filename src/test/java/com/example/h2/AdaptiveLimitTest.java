@@ -0,0 +1,56 @@
+package com.example.h2;
+
+import com.example.h2.config.AdaptiveLimit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveLimitTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(1250).toNanos();
+
+    @Test
+    public void testLimitGrowsWhenFastAndBacksOffWhenSlow() {
+        AdaptiveLimit limit = new AdaptiveLimit("test", 4, 2, 6, Duration.ofSeconds(1));
+        for (int i = 0; i < 4; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release(FAST);
+        assertThat(limit.getLimit()).isEqualTo(5);
+        limit.release(SLOW);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        // The second slow request was admitted before the cut, so it does not cut again.
+        limit.release(SLOW);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        // Nearly idle: a fast request does not raise a limit that is not being used.
+        limit.release(FAST);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    public void testSlowRequestsAdmittedAfterACutCutAgainInProportion() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit("test", 100, 10, 200, Duration.ofMillis(10));
+        for (int i = 0; i < 3; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+        long fourTimesTheTarget = Duration.ofMillis(40).toNanos();
+
+        // Four times over the target, so the cut is the largest one allowed.
+        limit.release(fourTimesTheTarget);
+        assertThat(limit.getLimit()).isEqualTo(50);
+        limit.release(fourTimesTheTarget);
+        assertThat(limit.getLimit()).isEqualTo(50);
+
+        // Admitted after the cut and still slow: the overload persists, so the limit comes down again.
+        Thread.sleep(60);
+        limit.release(fourTimesTheTarget);
+        assertThat(limit.getLimit()).isEqualTo(25);
+        assertThat(limit.getInFlight()).isZero();
+    }
+}
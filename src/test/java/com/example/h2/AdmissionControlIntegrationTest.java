@@ -0,0 +1,59 @@
+package com.example.h2;
+
+import com.example.h2.config.AdaptiveLimit;
+import com.example.h2.config.AdmissionConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A context of its own with the read limit pinned at two, so holding its permits cannot move the limit that the
+// other integration tests run under.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.journal.enabled=false",
+        "app.admission.read.initial-limit=2",
+        "app.admission.read.min-limit=2",
+        "app.admission.read.max-limit=2"})
+public class AdmissionControlIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    @Qualifier(AdmissionConfig.READ_LIMIT)
+    private AdaptiveLimit readLimit;
+
+    @Test
+    public void testSaturatedReadsAreShedWithRetryAfter() {
+        assertThat(readLimit.tryAcquire()).isTrue();
+        assertThat(readLimit.tryAcquire()).isTrue();
+        try {
+            ResponseEntity<String> read = restTemplate.getForEntity("http://localhost:" + port + "/books/all", String.class);
+            ResponseEntity<String> write = restTemplate.postForEntity("http://localhost:" + port + "/borrower/999999/loans",
+                    List.of(1L), String.class);
+            ResponseEntity<String> export = restTemplate.getForEntity("http://localhost:" + port + "/books/export", String.class);
+
+            assertThat(read.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+            assertThat(read.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+            assertThat(write.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+            assertThat(export.getStatusCode()).isEqualTo(HttpStatus.OK);
+        } finally {
+            readLimit.release(0);
+            readLimit.release(0);
+        }
+        assertThat(readLimit.getLimit()).isEqualTo(2);
+        assertThat(restTemplate.getForEntity("http://localhost:" + port + "/books/all", String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+}
@@ -1,10 +1,21 @@
 package com.example.h2;
 
+import com.example.h2.controller.EventController;
 import com.example.h2.model.Book;
 import com.example.h2.model.Borrower;
 import com.example.h2.response.ApiResponse;
+import com.example.h2.response.BookBatchResponse;
+import com.example.h2.response.BookResponse;
+import com.example.h2.response.ChangeEvent;
+import com.example.h2.response.LoanBatchResponse;
+import com.example.h2.response.StatsResponse;
+import com.example.h2.response.TitleStatsResponse;
+import com.example.h2.service.EntityCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
@@ -12,10 +23,25 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static com.example.h2.config.CacheConfig.BORROWERS_CACHE;
 import static org.assertj.core.api.Assertions.assertThat;
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.journal.enabled=false")
+@AutoConfigureObservability
 @Transactional
 public class BookControllerIntegrationTest {
 
@@ -25,6 +51,11 @@ public class BookControllerIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityCache entityCache;
 
     @Test
     public void testAddBookWithValidation() {
@@ -95,6 +126,27 @@ public class BookControllerIntegrationTest {
         assertThat(borrowResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(borrowResponse.getBody()).contains("Book borrowed successfully.");
 
+        // Look the loan up from both sides
+        ResponseEntity<ApiResponse<List<Borrower>>> borrowersResponse = restTemplate.exchange(
+                "http://localhost:" + port + "/books/" + bookId + "/borrowers",
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<ApiResponse<List<Borrower>>>() {}
+        );
+
+        assertThat(borrowersResponse.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(borrowersResponse.getBody().getData()).extracting(Borrower::getId).containsExactly(borrowerId);
+        assertThat(borrowersResponse.getBody().getData().get(0).getBorrowedBookIds()).contains(bookId);
+
+        ResponseEntity<ApiResponse<Borrower>> borrowerResponse = restTemplate.exchange(
+                "http://localhost:" + port + "/borrower/" + borrowerId,
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}
+        );
+
+        assertThat(borrowerResponse.getBody().getData().getBorrowedBookIds()).containsExactly(bookId);
+
         // Try borrowing the book again
         ResponseEntity<String> duplicateBorrowResponse = restTemplate.postForEntity(
                 "http://localhost:" + port + "/books/" + bookId + "/borrow/" + borrowerId,
@@ -151,4 +203,458 @@ public class BookControllerIntegrationTest {
         assertThat(borrowResponse.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
         assertThat(borrowResponse.getBody()).contains("Book with ID 999999 not found.");
     }
+
+    @Test
+    public void testGetAllUniqueBooksPaginatesDistinctBooks() {
+        for (String title : new String[]{"Paged Book A", "Paged Book A", "Paged Book B"}) {
+            Book book = new Book();
+            book.setTitle(title);
+            book.setAuthor("Paged Author");
+            book.setIsbn(title.equals("Paged Book A") ? "5550000001" : "5550000002");
+            restTemplate.postForEntity("http://localhost:" + port + "/books", book, String.class);
+        }
+
+        List<String> keys = new ArrayList<>();
+        String cursor = null;
+        long totalBooks;
+        do {
+            String url = "http://localhost:" + port + "/books/all?size=1" + (cursor == null ? "" : "&cursor=" + cursor);
+            ResponseEntity<ApiResponse<BookResponse>> page = restTemplate.exchange(url, HttpMethod.GET, null,
+                    new ParameterizedTypeReference<ApiResponse<BookResponse>>() {});
+
+            assertThat(page.getStatusCode()).isEqualTo(HttpStatus.OK);
+            BookResponse body = page.getBody().getData();
+            assertThat(body.getBooks()).hasSizeLessThanOrEqualTo(1);
+            body.getBooks().forEach(b -> keys.add(b.getIsbn() + "|" + b.getTitle() + "|" + b.getAuthor()));
+            totalBooks = body.getTotalBooks();
+            cursor = body.getNext();
+        } while (cursor != null);
+
+        assertThat(keys).doesNotHaveDuplicates();
+        assertThat(keys).contains("5550000001|Paged Book A|Paged Author", "5550000002|Paged Book B|Paged Author");
+        assertThat(totalBooks).isEqualTo(keys.size());
+    }
+
+    @Test
+    public void testGetAllUniqueBooksServesGzippedSnapshot() throws IOException {
+        for (int i = 0; i < 20; i++) {
+            Book book = new Book();
+            book.setTitle("Snapshot Book " + i);
+            book.setAuthor("Snapshot Author");
+            book.setIsbn("5560000" + i);
+            restTemplate.postForEntity("http://localhost:" + port + "/books", book, String.class);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        ResponseEntity<byte[]> plain = restTemplate.getForEntity("http://localhost:" + port + "/books/all?size=20", byte[].class);
+        ResponseEntity<byte[]> gzipped = restTemplate.exchange("http://localhost:" + port + "/books/all?size=20",
+                HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertThat(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipped.getHeaders().getVary()).contains(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(gzipped.getHeaders().getETag()).isNotEqualTo(plain.getHeaders().getETag());
+        assertThat(gzipped.getBody().length).isLessThan(plain.getBody().length);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertThat(in.readAllBytes()).isEqualTo(plain.getBody());
+        }
+        assertThat(objectMapper.readTree(plain.getBody()).path("data").path("books")).hasSize(20);
+
+        // A tag only revalidates the coding it was issued for.
+        headers.setIfNoneMatch(gzipped.getHeaders().getETag());
+        assertThat(restTemplate.exchange("http://localhost:" + port + "/books/all?size=20", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        headers.setIfNoneMatch(plain.getHeaders().getETag());
+        assertThat(restTemplate.exchange("http://localhost:" + port + "/books/all?size=20", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void testGetAllUniqueBooksRejectsInvalidCursor() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/books/all?cursor=not-a-cursor", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testExportBooksStreamsNdjson() throws IOException {
+        Book book = new Book();
+        book.setTitle("Exported Book");
+        book.setAuthor("Export Author");
+        book.setIsbn("7770000001");
+        restTemplate.postForEntity("http://localhost:" + port + "/books", book, String.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("http://localhost:" + port + "/books/export", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType().toString()).startsWith("application/x-ndjson");
+        List<String> lines = response.getBody().lines().toList();
+        assertThat(lines).isNotEmpty();
+        for (String line : lines) {
+            assertThat(objectMapper.readValue(line, Book.class).getId()).isNotNull();
+        }
+        assertThat(lines).anyMatch(line -> line.contains("\"isbn\":\"7770000001\""));
+    }
+
+    @Test
+    public void testBatchImportReportsPerItemResults() {
+        String ndjson = """
+                {"title":"Batch Book","author":"Batch Author","isbn":"8880000001"}
+                {"title":"Batch Book","author":"Batch Author","isbn":"8880000001"}
+                {"title":"Other Title","author":"Batch Author","isbn":"8880000001"}
+                {"title":"","author":"Batch Author","isbn":"8880000002"}
+                """;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+        ResponseEntity<ApiResponse<BookBatchResponse>> response = restTemplate.exchange(
+                "http://localhost:" + port + "/books/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(ndjson, headers),
+                new ParameterizedTypeReference<ApiResponse<BookBatchResponse>>() {}
+        );
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        BookBatchResponse result = response.getBody().getData();
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getRejected()).isEqualTo(2);
+        assertThat(result.getItems()).extracting(BookBatchResponse.Item::getStatus)
+                .containsExactly(BookBatchResponse.CREATED, BookBatchResponse.CREATED, BookBatchResponse.REJECTED, BookBatchResponse.REJECTED);
+        assertThat(result.getItems().get(2).getError()).contains("A book with ISBN 8880000001 must have the same title and author.");
+
+        ResponseEntity<ApiResponse<Book>> stored = restTemplate.exchange(
+                "http://localhost:" + port + "/books/" + result.getItems().get(1).getId(),
+                HttpMethod.GET,
+                null,
+                new ParameterizedTypeReference<ApiResponse<Book>>() {}
+        );
+        assertThat(stored.getBody().getData().getIsbn()).isEqualTo("8880000001");
+    }
+
+    @Test
+    public void testBatchBorrowAndReturnReportsPerItemResults() {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            Book book = new Book();
+            book.setTitle("Stacked Book " + i);
+            book.setAuthor("Stack Author");
+            book.setIsbn("8890000" + i);
+            bookIds.add(restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                    new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId());
+        }
+        Borrower borrower = new Borrower();
+        borrower.setName("Stack Reader");
+        borrower.setEmailAddress("stack@example.com");
+        Long borrowerId = restTemplate.exchange("http://localhost:" + port + "/borrower", HttpMethod.POST, new HttpEntity<>(borrower),
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData().getId();
+        restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookIds.get(1) + "/borrow/" + borrowerId, null, String.class);
+        String loansUrl = "http://localhost:" + port + "/borrower/" + borrowerId + "/loans";
+
+        LoanBatchResponse borrowed = restTemplate.exchange(loansUrl, HttpMethod.POST,
+                new HttpEntity<>(List.of(bookIds.get(0), bookIds.get(1), 999999L, bookIds.get(0))),
+                new ParameterizedTypeReference<ApiResponse<LoanBatchResponse>>() {}).getBody().getData();
+
+        assertThat(borrowed.getReceived()).isEqualTo(4);
+        assertThat(borrowed.getSucceeded()).isEqualTo(1);
+        assertThat(borrowed.getItems()).extracting(LoanBatchResponse.Item::getStatus)
+                .containsExactly(LoanBatchResponse.BORROWED, LoanBatchResponse.REJECTED, LoanBatchResponse.REJECTED, LoanBatchResponse.REJECTED);
+        assertThat(borrowed.getItems()).extracting(LoanBatchResponse.Item::getError).containsExactly(null,
+                "Book already borrowed by this member.", "Book with ID 999999 not found.", "Duplicate book id in request.");
+        Borrower reader = restTemplate.exchange("http://localhost:" + port + "/borrower/" + borrowerId, HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData();
+        assertThat(reader.getBorrowedBookIds()).containsExactlyInAnyOrderElementsOf(bookIds);
+
+        LoanBatchResponse returned = restTemplate.exchange(loansUrl, HttpMethod.DELETE,
+                new HttpEntity<>(List.of(bookIds.get(0), bookIds.get(1), 999999L)),
+                new ParameterizedTypeReference<ApiResponse<LoanBatchResponse>>() {}).getBody().getData();
+
+        assertThat(returned.getItems()).extracting(LoanBatchResponse.Item::getStatus)
+                .containsExactly(LoanBatchResponse.RETURNED, LoanBatchResponse.RETURNED, LoanBatchResponse.REJECTED);
+        reader = restTemplate.exchange("http://localhost:" + port + "/borrower/" + borrowerId, HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData();
+        assertThat(reader.getBorrowedBookIds()).isEmpty();
+    }
+
+    @Test
+    @Timeout(30)
+    public void testEventStreamPushesAndReplaysChanges() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        Book book = new Book();
+        book.setTitle("Evented Book");
+        book.setAuthor("Event Author");
+        book.setIsbn("6650001");
+        Borrower borrower = new Borrower();
+        borrower.setName("Event Reader");
+        borrower.setEmailAddress("events@example.com");
+
+        Map<String, String> created;
+        Map<String, String> borrowed;
+        try (Stream<String> live = openEvents(client, null)) {
+            Iterator<String> lines = live.iterator();
+            assertThat(lines.next()).isEqualTo(":connected");
+            Long bookId = restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                    new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId();
+            Long borrowerId = restTemplate.exchange("http://localhost:" + port + "/borrower", HttpMethod.POST, new HttpEntity<>(borrower),
+                    new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData().getId();
+            restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookId + "/borrow/" + borrowerId, null, String.class);
+
+            created = nextEvent(lines, "\"bookId\":" + bookId + ",");
+            borrowed = nextEvent(lines, "\"bookId\":" + bookId + ",");
+        }
+        assertThat(created.get("event")).isEqualTo(ChangeEvent.BOOK_CREATED);
+        assertThat(borrowed.get("event")).isEqualTo(ChangeEvent.BOOK_BORROWED);
+        assertThat(objectMapper.readValue(borrowed.get("data"), ChangeEvent.class).getSequence())
+                .isGreaterThan(objectMapper.readValue(created.get("data"), ChangeEvent.class).getSequence());
+
+        try (Stream<String> resumed = openEvents(client, created.get("id"))) {
+            Iterator<String> lines = resumed.iterator();
+            assertThat(nextEvent(lines, "\"bookId\":" + objectMapper.readValue(created.get("data"), ChangeEvent.class).getBookId() + ","))
+                    .containsEntry("id", borrowed.get("id"));
+        }
+        try (Stream<String> unknown = openEvents(client, "not-an-event-id")) {
+            assertThat(nextEvent(unknown.iterator(), "sequence").get("event")).isEqualTo(EventController.RESET_EVENT);
+        }
+    }
+
+    @Test
+    public void testStatsFollowBorrowsAndReturns() {
+        List<Long> bookIds = new ArrayList<>();
+        for (String isbn : List.of("3310001", "3310002")) {
+            Book book = new Book();
+            book.setTitle("Counted Book " + isbn);
+            book.setAuthor("Stats Author");
+            book.setIsbn(isbn);
+            bookIds.add(restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                    new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId());
+        }
+        List<Long> borrowerIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Borrower borrower = new Borrower();
+            borrower.setName("Stats Reader " + i);
+            borrower.setEmailAddress("stats" + i + "@example.com");
+            borrowerIds.add(restTemplate.exchange("http://localhost:" + port + "/borrower", HttpMethod.POST, new HttpEntity<>(borrower),
+                    new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData().getId());
+        }
+        StatsResponse before = restTemplate.exchange("http://localhost:" + port + "/stats", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<StatsResponse>>() {}).getBody().getData();
+
+        for (Long borrowerId : borrowerIds) {
+            restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookIds.get(0) + "/borrow/" + borrowerId, null, String.class);
+        }
+        restTemplate.exchange("http://localhost:" + port + "/borrower/" + borrowerIds.get(0) + "/loans", HttpMethod.POST,
+                new HttpEntity<>(List.of(bookIds.get(1))), String.class);
+        restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookIds.get(0) + "/return/" + borrowerIds.get(1), null, String.class);
+
+        TitleStatsResponse first = restTemplate.exchange("http://localhost:" + port + "/stats/isbn/3310001", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<TitleStatsResponse>>() {}).getBody().getData();
+        assertThat(first).extracting(TitleStatsResponse::getTitle, TitleStatsResponse::getBorrows, TitleStatsResponse::getOnLoan)
+                .containsExactly("Counted Book 3310001", 2L, 1L);
+        StatsResponse after = restTemplate.exchange("http://localhost:" + port + "/stats", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<StatsResponse>>() {}).getBody().getData();
+        assertThat(after.getBorrows() - before.getBorrows()).isEqualTo(3);
+        assertThat(after.getLoans() - before.getLoans()).isEqualTo(2);
+        assertThat(after.getActiveBorrowers() - before.getActiveBorrowers()).isEqualTo(1);
+        List<TitleStatsResponse> popular = restTemplate.exchange("http://localhost:" + port + "/stats/popular?limit=100", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<List<TitleStatsResponse>>>() {}).getBody().getData();
+        assertThat(popular).extracting(TitleStatsResponse::getIsbn).contains("3310001");
+
+        restTemplate.exchange("http://localhost:" + port + "/borrower/" + borrowerIds.get(0), HttpMethod.DELETE, null, String.class);
+        StatsResponse removed = restTemplate.exchange("http://localhost:" + port + "/stats", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<StatsResponse>>() {}).getBody().getData();
+        assertThat(removed.getLoans()).isEqualTo(before.getLoans());
+        assertThat(removed.getActiveBorrowers()).isEqualTo(before.getActiveBorrowers());
+        assertThat(removed.getBorrows()).isEqualTo(after.getBorrows());
+    }
+
+    @Test
+    public void testConditionalGetsAnswerNotModified() {
+        Book book = new Book();
+        book.setTitle("Tagged Book");
+        book.setAuthor("Tag Author");
+        book.setIsbn("8900000001");
+        Long bookId = restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId();
+        Borrower borrower = new Borrower();
+        borrower.setName("Tag Reader");
+        borrower.setEmailAddress("tag@example.com");
+        Long borrowerId = restTemplate.exchange("http://localhost:" + port + "/borrower", HttpMethod.POST, new HttpEntity<>(borrower),
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData().getId();
+
+        for (String path : List.of("/books/" + bookId, "/books/all?size=5", "/borrower/" + borrowerId)) {
+            ResponseEntity<String> first = restTemplate.getForEntity("http://localhost:" + port + path, String.class);
+            String etag = first.getHeaders().getETag();
+            assertThat(etag).as(path).startsWith("\"");
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setIfNoneMatch(etag);
+            ResponseEntity<String> again = restTemplate.exchange("http://localhost:" + port + path, HttpMethod.GET,
+                    new HttpEntity<>(headers), String.class);
+            assertThat(again.getStatusCode()).as(path).isEqualTo(HttpStatus.NOT_MODIFIED);
+            assertThat(again.getHeaders().get(HttpHeaders.ETAG)).as(path).containsExactly(etag);
+            assertThat(again.getBody()).as(path).isNull();
+        }
+
+        // Catalog writes change the catalog tag; loans change the borrower's tag.
+        String catalogTag = restTemplate.getForEntity("http://localhost:" + port + "/books/all?size=5", String.class).getHeaders().getETag();
+        String borrowerTag = restTemplate.getForEntity("http://localhost:" + port + "/borrower/" + borrowerId, String.class).getHeaders().getETag();
+        restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookId + "/borrow/" + borrowerId, null, String.class);
+        book.setIsbn("8900000002");
+        restTemplate.postForEntity("http://localhost:" + port + "/books", book, String.class);
+
+        assertThat(restTemplate.getForEntity("http://localhost:" + port + "/books/all?size=5", String.class).getHeaders().getETag())
+                .isNotEqualTo(catalogTag);
+        assertThat(restTemplate.getForEntity("http://localhost:" + port + "/borrower/" + borrowerId, String.class).getHeaders().getETag())
+                .isNotEqualTo(borrowerTag);
+    }
+
+    @Test
+    public void testSearchBooksRanksPrefixMatches() {
+        String[][] books = {
+                {"Zebulon Quartz", "Miriam Quill", "6660000001"},
+                {"Quartzite Handbook", "Zebulon Marsh", "6660000002"},
+                {"Quartzite Handbook", "Zebulon Marsh", "6660000002"},
+                {"Unrelated Title", "Someone Else", "6660000003"}
+        };
+        List<Long> ids = new ArrayList<>();
+        for (String[] fields : books) {
+            Book book = new Book();
+            book.setTitle(fields[0]);
+            book.setAuthor(fields[1]);
+            book.setIsbn(fields[2]);
+            ids.add(restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                    new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId());
+        }
+
+        // Title hits rank above author hits, whole words above prefixes, and copies of an ISBN appear once.
+        BookResponse firstPage = search("zeb QUA", null, 1);
+        assertThat(firstPage.getTotalBooks()).isEqualTo(2);
+        assertThat(firstPage.getBooks()).extracting(Book::getIsbn).containsExactly("6660000001");
+        BookResponse secondPage = search("zeb QUA", firstPage.getNext(), 1);
+        assertThat(secondPage.getBooks()).extracting(Book::getIsbn).containsExactly("6660000002");
+        assertThat(secondPage.getNext()).isNull();
+
+        // Deleting the indexed copy hands the ISBN over to the remaining copy.
+        restTemplate.delete("http://localhost:" + port + "/books/" + ids.get(1));
+        assertThat(search("quartzite", null, 10).getBooks()).extracting(Book::getId).containsExactly(ids.get(2));
+
+        assertThat(firstPage.isTruncated()).isFalse();
+
+        // 65 words share the prefix, one more than max-expansions searches.
+        for (int book = 0; book < 2; book++) {
+            StringBuilder title = new StringBuilder();
+            for (int word = book; word < 65; word += 2) {
+                title.append(" yq").append((char) ('a' + word / 26)).append((char) ('a' + word % 26));
+            }
+            Book many = new Book();
+            many.setTitle(title.toString().trim());
+            many.setAuthor("Prefix Author");
+            many.setIsbn("667000000" + book);
+            restTemplate.postForEntity("http://localhost:" + port + "/books", many, String.class);
+        }
+        assertThat(search("yq", null, 10).isTruncated()).isTrue();
+        assertThat(search("yqaa", null, 10).isTruncated()).isFalse();
+
+        ResponseEntity<String> invalid = restTemplate.getForEntity("http://localhost:" + port + "/books/search?q=--", String.class);
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void testReactiveReadsMatchBlockingReads() throws IOException {
+        Book book = new Book();
+        book.setTitle("Reactive Book");
+        book.setAuthor("Reactive Author");
+        book.setIsbn("9990000001");
+        Long bookId = restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId();
+        Borrower borrower = new Borrower();
+        borrower.setName("Reactive Reader");
+        borrower.setEmailAddress("reactive@example.com");
+        Long borrowerId = restTemplate.exchange("http://localhost:" + port + "/borrower", HttpMethod.POST, new HttpEntity<>(borrower),
+                new ParameterizedTypeReference<ApiResponse<Borrower>>() {}).getBody().getData().getId();
+        restTemplate.postForEntity("http://localhost:" + port + "/books/" + bookId + "/borrow/" + borrowerId, null, String.class);
+
+        assertThat(restTemplate.getForObject("http://localhost:" + port + "/reactive/books/" + bookId, String.class))
+                .isEqualTo(restTemplate.getForObject("http://localhost:" + port + "/books/" + bookId, String.class));
+        String reactiveBorrower = restTemplate.getForObject("http://localhost:" + port + "/reactive/borrower/" + borrowerId, String.class);
+        // The reactive path reads outside any transaction and leaves filling the caches to the JPA path.
+        assertThat(entityCache.get(BORROWERS_CACHE, borrowerId, Borrower.class)).isNull();
+        assertThat(reactiveBorrower)
+                .isEqualTo(restTemplate.getForObject("http://localhost:" + port + "/borrower/" + borrowerId, String.class));
+        assertThat(restTemplate.getForEntity("http://localhost:" + port + "/reactive/books/999999", String.class).getStatusCode())
+                .isEqualTo(restTemplate.getForEntity("http://localhost:" + port + "/books/999999", String.class).getStatusCode());
+
+        BookResponse blockingPage = restTemplate.exchange("http://localhost:" + port + "/books/all?size=500", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<BookResponse>>() {}).getBody().getData();
+        BookResponse reactivePage = restTemplate.exchange("http://localhost:" + port + "/reactive/books/all?size=500", HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<BookResponse>>() {}).getBody().getData();
+        assertThat(reactivePage.getBooks()).extracting(Book::getId).containsExactlyElementsOf(
+                blockingPage.getBooks().stream().map(Book::getId).toList());
+        assertThat(reactivePage.getTotalBooks()).isEqualTo(blockingPage.getTotalBooks());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.parseMediaType("application/x-ndjson")));
+        ResponseEntity<String> stream = restTemplate.exchange("http://localhost:" + port + "/reactive/books/all",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        List<Long> streamedIds = new ArrayList<>();
+        for (String line : stream.getBody().lines().toList()) {
+            streamedIds.add(objectMapper.readValue(line, Book.class).getId());
+        }
+        assertThat(streamedIds).hasSize((int) blockingPage.getTotalBooks()).contains(bookId).isSorted();
+    }
+
+    @Test
+    public void testPrometheusEndpointExposesLibraryMetrics() {
+        restTemplate.getForEntity("http://localhost:" + port + "/books/all?cursor=not-a-cursor", String.class);
+
+        ResponseEntity<String> response = restTemplate.getForEntity("http://localhost:" + port + "/actuator/prometheus", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .contains("http_server_requests_seconds_bucket")
+                .contains("library_service_seconds_count{class=\"com.example.h2.service.BookService\"")
+                .contains("library_exceptions_total{exception=\"BadRequestException\",status=\"400\"}")
+                .contains("hikaricp_connections_active")
+                .contains("hibernate_query_executions_total")
+                .contains("service_executor_queued")
+                .contains("service_executor_wait_seconds_count");
+    }
+
+    private Stream<String> openEvents(HttpClient client, String lastEventId) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/events"));
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        HttpResponse<Stream<String>> response = client.send(request.build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode()).isEqualTo(HttpStatus.OK.value());
+        return response.body();
+    }
+
+    // The fields of the next event whose data contains the fragment.
+    private static Map<String, String> nextEvent(Iterator<String> lines, String fragment) {
+        Map<String, String> fields = new HashMap<>();
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line.isEmpty()) {
+                if (fields.getOrDefault("data", "").contains(fragment)) {
+                    return fields;
+                }
+                fields = new HashMap<>();
+            } else if (!line.startsWith(":")) {
+                String[] field = line.split(":", 2);
+                fields.put(field[0], field[1]);
+            }
+        }
+        throw new AssertionError("Event stream ended before an event containing " + fragment);
+    }
+
+    private BookResponse search(String query, String cursor, int size) {
+        String url = "http://localhost:" + port + "/books/search?q={q}&size={size}" + (cursor == null ? "" : "&cursor=" + cursor);
+        ResponseEntity<ApiResponse<BookResponse>> response = restTemplate.exchange(url, HttpMethod.GET, null,
+                new ParameterizedTypeReference<ApiResponse<BookResponse>>() {}, query, size);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody().getData();
+    }
 }
@@ -26,7 +26,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = "app.journal.enabled=false")
 public class BookControllerUnitTests {
 
     @Autowired
@@ -0,0 +1,270 @@
+package com.example.h2;
+
+import com.example.h2.exception.BadRequestException;
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.repository.BookRepository;
+import com.example.h2.repository.IsbnRecordRepository;
+import com.example.h2.repository.LoanRepository;
+import com.example.h2.service.BookService;
+import com.example.h2.service.BorrowerService;
+import com.example.h2.service.EntityCache;
+import com.example.h2.service.IsbnRegistry;
+import com.example.h2.service.LibraryStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static com.example.h2.config.CacheConfig.BOOKS_CACHE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.journal.enabled=false")
+@AutoConfigureObservability
+public class BookServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BorrowerService borrowerService;
+
+    @Autowired
+    private LoanRepository loanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private IsbnRegistry isbnRegistry;
+
+    @Autowired
+    private IsbnRecordRepository isbnRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private LibraryStats libraryStats;
+
+    @Test
+    public void concurrentBorrowsOfOneHotBookAreAllRecorded() throws Exception {
+        Book book = newBook("Hot Title", "1110000001");
+        List<Borrower> borrowers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            borrowers.add(newBorrower("Hot Reader " + i));
+        }
+
+        Outcome outcome = hammer(THREADS, i -> () -> bookService.borrowBook(book.getId(), borrowers.get(i).getId()));
+
+        assertThat(outcome.succeeded()).isEqualTo(THREADS);
+        assertThat(bookService.getBorrowersOfBook(book.getId()).join()).hasSize(THREADS);
+    }
+
+    @Test
+    public void concurrentBorrowsByOneBorrowerDoNotLoseUpdates() throws Exception {
+        Borrower borrower = newBorrower("Busy Reader");
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            books.add(newBook("Stack Title " + i, "22200000" + String.format("%02d", i)));
+        }
+
+        Outcome outcome = hammer(THREADS, i -> () -> bookService.borrowBook(books.get(i).getId(), borrower.getId()));
+
+        assertThat(outcome.succeeded()).isEqualTo(THREADS);
+        assertThat(loanRepository.findBookIdsByBorrowerId(borrower.getId()))
+                .containsExactlyInAnyOrderElementsOf(books.stream().map(Book::getId).toList());
+        assertThat(borrowerService.getBorrowerById(borrower.getId()).join().orElseThrow().getVersion())
+                .isEqualTo(THREADS);
+    }
+
+    @Test
+    public void duplicateConcurrentBorrowsAndReturnsSucceedExactlyOnce() throws Exception {
+        Book book = newBook("Contended Title", "3330000001");
+        Borrower borrower = newBorrower("Impatient Reader");
+
+        Outcome borrows = hammer(THREADS, i -> () -> bookService.borrowBook(book.getId(), borrower.getId()));
+
+        assertThat(borrows.succeeded()).isEqualTo(1);
+        assertThat(borrows.badRequests()).isEqualTo(THREADS - 1);
+        assertThat(loanRepository.findBookIdsByBorrowerId(borrower.getId())).containsExactly(book.getId());
+
+        Outcome returns = hammer(THREADS, i -> () -> bookService.returnBook(book.getId(), borrower.getId()));
+
+        assertThat(returns.succeeded()).isEqualTo(1);
+        assertThat(returns.badRequests()).isEqualTo(THREADS - 1);
+        assertThat(loanRepository.findBookIdsByBorrowerId(borrower.getId())).isEmpty();
+    }
+
+    // The return commits after the borrow, as the borrower's row lock ensures, but its callbacks run first.
+    @Test
+    public void statisticsApplyLoanChangesInCommitOrder() {
+        Book book = newBook("Overtaken Title", "3340000001");
+        Borrower borrower = newBorrower("Overtaken Reader");
+
+        List<TransactionSynchronization> borrow = inTransaction(() -> libraryStats.borrowedAfterCommit(borrower.getId(), List.of(book.getId())));
+        List<TransactionSynchronization> giveBack = inTransaction(() -> libraryStats.returnedAfterCommit(borrower.getId(), List.of(book.getId())));
+        borrow.forEach(synchronization -> synchronization.beforeCommit(false));
+        giveBack.forEach(synchronization -> synchronization.beforeCommit(false));
+        TransactionSynchronizationUtils.invokeAfterCommit(giveBack);
+        TransactionSynchronizationUtils.invokeAfterCompletion(giveBack, TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationUtils.invokeAfterCommit(borrow);
+        TransactionSynchronizationUtils.invokeAfterCompletion(borrow, TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(libraryStats.title(book.getIsbn()).getOnLoan()).isZero();
+        assertThat(libraryStats.title(book.getIsbn()).getBorrows()).isEqualTo(1);
+    }
+
+    @Test
+    public void concurrentMissesOfOneBookShareOneLoad() {
+        Book book = newBook("Featured Title", "4450000001");
+        entityCache.evictAfterCommit(BOOKS_CACHE, book.getId());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+        Supplier<Optional<Book>> loader = () -> {
+            queries.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of(book);
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<CompletableFuture<Optional<Book>>> loads = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                loads.add(entityCache.load(BOOKS_CACHE, book.getId(), loader, executor));
+            }
+            // A write in between detaches the running load, so later misses do not get what it read.
+            entityCache.evictAfterCommit(BOOKS_CACHE, book.getId());
+            loads.add(entityCache.load(BOOKS_CACHE, book.getId(), loader, executor));
+            release.countDown();
+
+            assertThat(loads).allSatisfy(load -> assertThat(load.join()).contains(book));
+            assertThat(loads.stream().distinct()).hasSize(2);
+            assertThat(queries).hasValue(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // The copy is validated against the registry map without touching isbn_record; the release of the last other
+    // copy must wait for it to commit and then keep the record.
+    @Test
+    public void copySavedWhileTheLastOneIsDeletedKeepsItsIsbnRecord() throws Exception {
+        Book last = newBook("Released Title", "1120000001");
+        Book copy = new Book();
+        copy.setTitle(last.getTitle());
+        copy.setAuthor(last.getAuthor());
+        copy.setIsbn(last.getIsbn());
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService saver = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> save = saver.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                isbnRegistry.claim(copy);
+                bookRepository.save(copy);
+                claimed.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            claimed.await();
+            CompletableFuture<Long> delete = bookService.deleteBook(last.getId());
+            Thread.sleep(500);
+            commit.countDown();
+            save.get();
+            delete.join();
+
+            assertThat(isbnRecordRepository.existsById(last.getIsbn())).isTrue();
+        } finally {
+            saver.shutdownNow();
+        }
+    }
+
+    private Outcome hammer(int calls, IntFunction<Supplier<CompletableFuture<String>>> call) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(calls);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger badRequests = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                Supplier<CompletableFuture<String>> supplier = call.apply(i);
+                futures.add(callers.submit(() -> {
+                    start.await();
+                    try {
+                        supplier.get().join();
+                        succeeded.incrementAndGet();
+                    } catch (CompletionException e) {
+                        if (!(e.getCause() instanceof BadRequestException)) {
+                            throw e;
+                        }
+                        badRequests.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        return new Outcome(succeeded.get(), badRequests.get());
+    }
+
+    private static List<TransactionSynchronization> inTransaction(Runnable work) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Book newBook(String title, String isbn) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Concurrency Author");
+        book.setIsbn(isbn);
+        return bookService.saveBook(book).join();
+    }
+
+    private Borrower newBorrower(String name) {
+        Borrower borrower = new Borrower();
+        borrower.setName(name);
+        borrower.setEmailAddress(name.replace(' ', '.').toLowerCase() + "@example.com");
+        return borrowerService.registerBorrower(borrower).join();
+    }
+
+    private record Outcome(int succeeded, int badRequests) {}
+}
@@ -0,0 +1,59 @@
+package com.example.h2;
+
+import com.example.h2.service.EntityCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EntityCacheTest {
+
+    private static final String CACHE = "entities";
+
+    // The eviction arrives while the load is storing what it read before the write; the cache must end up empty.
+    @Test
+    public void evictionDuringTheCachingOfALoadWins() throws Exception {
+        CountDownLatch putStarted = new CountDownLatch(1);
+        ConcurrentMapCache cache = new ConcurrentMapCache(CACHE) {
+            @Override
+            public void put(Object key, Object value) {
+                putStarted.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.put(key, value);
+            }
+        };
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(cache));
+        cacheManager.afterPropertiesSet();
+        EntityCache entityCache = new EntityCache();
+        ReflectionTestUtils.setField(entityCache, "cacheManager", cacheManager);
+        ReflectionTestUtils.setField(entityCache, "meterRegistry", new SimpleMeterRegistry());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<Optional<String>> load = entityCache.load(CACHE, 1L, () -> Optional.of("before write"), executor);
+            assertThat(putStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            entityCache.evictAfterCommit(CACHE, 1L);
+
+            assertThat(load.join()).contains("before write");
+            assertThat(entityCache.get(CACHE, 1L, String.class)).isNull();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
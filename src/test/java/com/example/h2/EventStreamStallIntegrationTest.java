@@ -0,0 +1,131 @@
+package com.example.h2;
+
+import com.example.h2.model.Book;
+import com.example.h2.response.ApiResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// More stalled clients than writers, with small socket buffers so their streams fill up after a few events.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.journal.enabled=false",
+        "app.events.writers=2",
+        "app.events.write-timeout=2s"})
+public class EventStreamStallIntegrationTest {
+
+    private static final int STALLED_CLIENTS = 4;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @TestConfiguration
+    static class SmallSendBuffers {
+        @Bean
+        WebServerFactoryCustomizer<TomcatServletWebServerFactory> smallSendBuffers() {
+            return factory -> factory.addConnectorCustomizers(connector -> connector.setProperty("socket.txBufSize", "4096"));
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    public void testStalledClientsDoNotHoldUpOtherStreams() throws Exception {
+        List<Socket> stalled = new ArrayList<>();
+        try {
+            for (int i = 0; i < STALLED_CLIENTS; i++) {
+                stalled.add(openStalledStream());
+            }
+            StringBuilder ndjson = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                ndjson.append(String.format("{\"title\":\"Stalled Feed\",\"author\":\"Slow Reader\",\"isbn\":\"321%07d\"}%n", i));
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+            assertThat(restTemplate.postForEntity("http://localhost:" + port + "/books/batch",
+                    new HttpEntity<>(ndjson.toString(), headers), String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+            HttpResponse<Stream<String>> live = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/events")).build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            try (Stream<String> lines = live.body()) {
+                Iterator<String> iterator = lines.iterator();
+                assertThat(iterator.next()).isEqualTo(":connected");
+                Book book = new Book();
+                book.setTitle("After The Stall");
+                book.setAuthor("Quick Reader");
+                book.setIsbn("3219999999");
+                Long bookId = restTemplate.exchange("http://localhost:" + port + "/books", HttpMethod.POST, new HttpEntity<>(book),
+                        new ParameterizedTypeReference<ApiResponse<Book>>() {}).getBody().getData().getId();
+
+                String line;
+                do {
+                    line = iterator.next();
+                } while (!line.contains("\"bookId\":" + bookId + ","));
+
+                // The stalled streams are dropped after the write timeout; the live one stays.
+                while (meterRegistry.get("library.events.subscribers").gauge().value() > 1) {
+                    Thread.sleep(100);
+                }
+                assertThat(meterRegistry.get("library.events.subscribers").gauge().value()).isEqualTo(1.0);
+            }
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+    }
+
+    // Reads the response up to the "connected" comment and then nothing more.
+    private Socket openStalledStream() throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.setSoTimeout(10_000);
+        socket.connect(new InetSocketAddress("localhost", port));
+        socket.getOutputStream().write(("GET /events HTTP/1.1\r\nHost: localhost\r\nAccept: text/event-stream\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        InputStream in = socket.getInputStream();
+        StringBuilder received = new StringBuilder();
+        byte[] buffer = new byte[256];
+        while (!received.toString().contains(":connected")) {
+            int read = in.read(buffer);
+            assertThat(read).isPositive();
+            received.append(new String(buffer, 0, read, StandardCharsets.US_ASCII));
+        }
+        return socket;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.h2;
+
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.response.ChangeEvent;
+import com.example.h2.service.BookService;
+import com.example.h2.service.BorrowerService;
+import com.example.h2.service.ChangeFeed;
+import com.example.h2.service.DatabaseIdentity;
+import com.example.h2.service.LibraryStats;
+import com.example.h2.service.LoanJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two starts of the application on one database and one journal directory, with the history of another database
+// written in between. Its book ids overlap with this database's, and the replay must not count them.
+public class LibraryStatsReplayTest {
+
+    private static final String ISBN = "1130000001";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testStatisticsReplayOnlyTheHistoryOfTheirOwnDatabase() throws Exception {
+        String url = "jdbc:h2:mem:replay-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        Long bookId;
+        try (ConfigurableApplicationContext context = start(url)) {
+            BookService bookService = context.getBean(BookService.class);
+            Book book = new Book();
+            book.setTitle("Replayed Title");
+            book.setAuthor("Journal Author");
+            book.setIsbn(ISBN);
+            bookId = bookService.saveBook(book).join().getId();
+            Borrower borrower = new Borrower();
+            borrower.setName("Replayed Reader");
+            borrower.setEmailAddress("replayed.reader@example.com");
+            Long borrowerId = context.getBean(BorrowerService.class).registerBorrower(borrower).join().getId();
+            bookService.borrowBook(bookId, borrowerId).join();
+            bookService.returnBook(bookId, borrowerId).join();
+            bookService.borrowBook(bookId, borrowerId).join();
+        }
+
+        ChangeFeed changeFeed = new ChangeFeed(100);
+        LoanJournal foreign = new LoanJournal(changeFeed, new DatabaseIdentity(UUID.randomUUID()), new SimpleMeterRegistry(),
+                directory, DataSize.ofMegabytes(1), 1000, Duration.ofMillis(50));
+        for (int i = 0; i < 5; i++) {
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_BORROWED, bookId, 1000L + i);
+        }
+        foreign.close();
+
+        try (ConfigurableApplicationContext context = start(url)) {
+            LibraryStats libraryStats = context.getBean(LibraryStats.class);
+
+            assertThat(libraryStats.title(ISBN).getBorrows()).isEqualTo(2);
+            assertThat(libraryStats.title(ISBN).getOnLoan()).isEqualTo(1);
+            assertThat(libraryStats.title(ISBN).getTitle()).isEqualTo("Replayed Title");
+            assertThat(libraryStats.summary().getBorrows()).isEqualTo(2);
+            context.getBean(JdbcTemplate.class).execute("SHUTDOWN");
+        }
+    }
+
+    // Without the second-level cache: closing the context would close the JCache manager the test contexts share.
+    private ConfigurableApplicationContext start(String url) {
+        return new SpringApplicationBuilder(H2Application.class).profiles("no-l2").run(
+                "--server.port=0",
+                "--spring.datasource.url=" + url,
+                "--app.journal.enabled=true",
+                "--app.journal.dir=" + directory,
+                "--app.journal.segment-size=1MB");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.h2;
+
+import com.example.h2.response.ChangeEvent;
+import com.example.h2.service.ChangeFeed;
+import com.example.h2.service.DatabaseIdentity;
+import com.example.h2.service.LoanJournal;
+import com.example.h2.service.LoanJournal.Entry;
+import com.example.h2.service.LoanJournalReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class LoanJournalTest {
+
+    private static final UUID DATABASE = UUID.randomUUID();
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testJournalRotatesSegmentsAndContinuesAfterRestart() throws Exception {
+        ChangeFeed changeFeed = new ChangeFeed(100);
+        LoanJournal journal = open(changeFeed);
+        for (long bookId = 1; bookId <= 25; bookId++) {
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_BORROWED, bookId, 7L);
+        }
+        changeFeed.publishAfterCommit(ChangeEvent.BOOK_CREATED, 26L, null);
+        changeFeed.publishAfterCommit(ChangeEvent.BOOK_RETURNED, 3L, 7L);
+        journal.close();
+
+        journal = open(new ChangeFeed(100));
+        journal.close();
+        journal = open(changeFeed);
+        changeFeed.publishAfterCommit(ChangeEvent.BOOK_DELETED, 4L, null);
+        changeFeed.publishAfterCommit(ChangeEvent.BORROWER_REMOVED, null, 7L);
+        journal.close();
+
+        List<Entry> entries = new ArrayList<>();
+        LoanJournalReader reader = new LoanJournalReader(directory);
+        // Every start adds a DATABASE record: 3 of them, 25 borrows, one return, one delete and one removal.
+        assertThat(reader.replay(1, entries::add)).isEqualTo(31);
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertThat(segments.filter(file -> file.toString().endsWith(".journal")).count()).isEqualTo(4);
+        }
+        assertThat(entries).extracting(Entry::sequence).containsExactlyElementsOf(
+                Stream.iterate(1L, sequence -> sequence + 1).limit(31).toList());
+        assertThat(entries).filteredOn(entry -> entry.type() == LoanJournal.Type.DATABASE)
+                .extracting(Entry::sequence, Entry::database)
+                .containsExactly(tuple(1L, DATABASE), tuple(28L, DATABASE), tuple(29L, DATABASE));
+        assertThat(entries.get(26)).extracting(Entry::type, Entry::bookId, Entry::borrowerId)
+                .containsExactly(LoanJournal.Type.RETURNED, 3L, 7L);
+        assertThat(entries.get(30)).extracting(Entry::type, Entry::bookId, Entry::borrowerId)
+                .containsExactly(LoanJournal.Type.BORROWER_REMOVED, null, 7L);
+
+        List<Entry> tail = new ArrayList<>();
+        assertThat(reader.replay(24, tail::add)).isEqualTo(8);
+        assertThat(tail.get(0).sequence()).isEqualTo(24);
+        assertThat(reader.lastSequence()).isEqualTo(31);
+    }
+
+    // A crash in the middle of a record leaves its checksum unmatched: readers stop before it and the next start
+    // writes over it.
+    @Test
+    public void testTornRecordEndsTheJournal() throws Exception {
+        ChangeFeed changeFeed = new ChangeFeed(100);
+        LoanJournal journal = open(changeFeed);
+        for (long bookId = 1; bookId <= 3; bookId++) {
+            changeFeed.publishAfterCommit(ChangeEvent.BOOK_BORROWED, bookId, 7L);
+        }
+        journal.close();
+        Path segment;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segment = segments.filter(file -> file.toString().endsWith(".journal")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // The book id of the last record, the fourth after the DATABASE record.
+            channel.write(ByteBuffer.wrap(new byte[] {1}), 3 * 40 + 24);
+        }
+
+        LoanJournalReader reader = new LoanJournalReader(directory);
+        assertThat(reader.replay(1, entry -> {})).isEqualTo(3);
+        assertThat(reader.lastSequence()).isEqualTo(3);
+
+        journal = open(changeFeed);
+        changeFeed.publishAfterCommit(ChangeEvent.BOOK_RETURNED, 1L, 7L);
+        journal.close();
+
+        List<Entry> entries = new ArrayList<>();
+        assertThat(reader.replay(1, entries::add)).isEqualTo(5);
+        assertThat(entries).extracting(Entry::sequence).containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(entries.get(4)).extracting(Entry::type, Entry::bookId).containsExactly(LoanJournal.Type.RETURNED, 1L);
+    }
+
+    @Test
+    public void testDirectoryIsLockedWhileJournalIsOpen() throws Exception {
+        LoanJournal journal = open(new ChangeFeed(100));
+        assertThatThrownBy(() -> open(new ChangeFeed(100)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("in use");
+        journal.close();
+
+        open(new ChangeFeed(100)).close();
+    }
+
+    // Segments of ten records, so the 31 entries above span four of them.
+    private LoanJournal open(ChangeFeed changeFeed) throws Exception {
+        return new LoanJournal(changeFeed, new DatabaseIdentity(DATABASE), new SimpleMeterRegistry(), directory, DataSize.ofBytes(400), 1000, Duration.ofMillis(50));
+    }
+}
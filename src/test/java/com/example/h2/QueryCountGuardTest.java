@@ -0,0 +1,319 @@
+package com.example.h2;
+
+import com.example.h2.model.Book;
+import com.example.h2.model.Borrower;
+import com.example.h2.response.ApiResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Upper bounds on the SQL issued per request. A failure here means an endpoint started doing more database
+// work than it used to; raise a bound only when the extra statements are intended.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "app.journal.enabled=false")
+@AutoConfigureObservability
+public class QueryCountGuardTest {
+
+    private static final AtomicInteger ISBNS = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private QueryCounter queryCounter;
+
+    @BeforeEach
+    public void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+    }
+
+    @Test
+    public void addBookWithNewIsbn() {
+        QueryCounter.Count count = queryCounter.measure(() -> addBook(newIsbn()));
+
+        // ISBN claim and book insert, plus a book_seq call once every allocation block.
+        assertWithin(count, 3, 0);
+    }
+
+    @Test
+    public void addCopyOfKnownIsbn() {
+        String isbn = newIsbn();
+        addBook(isbn);
+
+        QueryCounter.Count count = queryCounter.measure(() -> addBook(isbn));
+
+        // Validated against the ISBN registry map, so only the insert, plus the occasional book_seq call.
+        assertWithin(count, 2, 0);
+    }
+
+    @Test
+    public void getBook() {
+        Long bookId = addBook(newIsbn());
+
+        QueryCounter.Count cached = queryCounter.measure(() -> assertOk(get("/books/" + bookId)));
+        evictCaches();
+        QueryCounter.Count cold = queryCounter.measure(() -> assertOk(get("/books/" + bookId)));
+
+        assertWithin(cached, 0, 0);
+        assertWithin(cold, 1, 1);
+    }
+
+    @Test
+    public void deleteBook() {
+        Long bookId = addBook(newIsbn());
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(exchange(HttpMethod.DELETE, "/books/" + bookId)));
+
+        assertWithin(count, 6, 2);
+    }
+
+    @Test
+    public void borrowAndReturnBook() {
+        Long bookId = addBook(newIsbn());
+        Long borrowerId = addBorrower();
+
+        QueryCounter.Count borrow = queryCounter.measure(() -> assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/borrow/" + borrowerId)));
+        QueryCounter.Count giveBack = queryCounter.measure(() -> assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/return/" + borrowerId)));
+
+        // Borrower lock and version bump, then the conditional loan write.
+        assertWithin(borrow, 3, 1);
+        assertWithin(giveBack, 3, 1);
+    }
+
+    @Test
+    public void borrowKeepsOtherBorrowersCached() {
+        Long bookId = addBook(newIsbn());
+        Long borrowerId = addBorrower();
+        Long otherId = addBorrower();
+        assertOk(get("/borrower/" + otherId));
+
+        assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/borrow/" + borrowerId));
+
+        assertWithin(queryCounter.measure(() -> assertOk(get("/borrower/" + otherId))), 0, 0);
+    }
+
+    // The ISBN of a deleted book is gone from the registry; its title is still reported from what the borrow recorded.
+    @Test
+    public void statsReadsDoNotQuery() {
+        String isbn = newIsbn();
+        Long bookId = addBook(isbn);
+        assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/borrow/" + addBorrower()));
+        assertOk(exchange(HttpMethod.DELETE, "/books/" + bookId));
+        evictCaches();
+
+        assertWithin(queryCounter.measure(() -> assertOk(get("/stats/popular?limit=100"))), 0, 0);
+        assertWithin(queryCounter.measure(() -> assertOk(get("/stats/isbn/" + isbn))), 0, 0);
+        assertThat(get("/stats/isbn/" + isbn).getBody()).contains("Guarded Title " + isbn);
+    }
+
+    @Test
+    public void batchBorrowAndReturnBooks() {
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            bookIds.add(addBook(newIsbn()));
+        }
+        String loans = "/borrower/" + addBorrower() + "/loans";
+
+        QueryCounter.Count borrow = queryCounter.measure(() -> assertOk(restTemplate.exchange(url(loans), HttpMethod.POST,
+                new HttpEntity<>(bookIds), String.class)));
+        QueryCounter.Count giveBack = queryCounter.measure(() -> assertOk(restTemplate.exchange(url(loans), HttpMethod.DELETE,
+                new HttpEntity<>(bookIds), String.class)));
+
+        // Borrower lock and version bump, one IN query per check and one write, whatever the size of the stack.
+        assertWithin(borrow, 5, 11);
+        assertWithin(giveBack, 4, 11);
+    }
+
+    @Test
+    public void getBorrowersOfBook() {
+        Long bookId = addBook(newIsbn());
+        for (int i = 0; i < 5; i++) {
+            assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/borrow/" + addBorrower()));
+        }
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(get("/books/" + bookId + "/borrowers")));
+
+        // One query for the borrowers and one for all of their loans, however many borrowers there are.
+        assertWithin(count, 3, 11);
+    }
+
+    @Test
+    public void getAllUniqueBooksPage() {
+        addBook(newIsbn());
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(get("/books/all?size=10")));
+
+        // The page plus one look-ahead row; the distinct count comes from the ISBN registry.
+        assertWithin(count, 1, 11);
+    }
+
+    // Only default-size pages reached from the first page are kept; other sizes and made-up cursors are rebuilt.
+    @Test
+    public void catalogSnapshotsKeepOnlyServiceIssuedPages() {
+        addBook(newIsbn());
+        String madeUpCursor = Base64.getUrlEncoder().withoutPadding().encodeToString("1".getBytes(StandardCharsets.UTF_8));
+        for (String path : List.of("/books/all", "/books/all?size=10", "/books/all?cursor=" + madeUpCursor)) {
+            assertOk(get(path));
+        }
+        evictCaches();
+
+        assertWithin(queryCounter.measure(() -> assertOk(get("/books/all"))), 0, 0);
+        assertThat(queryCounter.measure(() -> assertOk(get("/books/all?size=10"))).statements()).isPositive();
+        assertThat(queryCounter.measure(() -> assertOk(get("/books/all?cursor=" + madeUpCursor))).statements()).isPositive();
+    }
+
+    @Test
+    public void getAllUniqueBooksNotModified() {
+        addBook(newIsbn());
+        String etag = get("/books/all?size=10").getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertThat(restTemplate.exchange(url("/books/all?size=10"),
+                HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED));
+
+        assertWithin(count, 0, 0);
+    }
+
+    @Test
+    public void searchBooks() {
+        addBook(newIsbn());
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(get("/books/search?q=guarded&size=10")));
+
+        assertWithin(count, 1, 10);
+    }
+
+    @Test
+    public void importBatchOfBooks() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            ndjson.append(String.format("{\"title\":\"Guarded Batch %1$s\",\"author\":\"Guard\",\"isbn\":\"%1$s\"}%n", newIsbn()));
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/x-ndjson"));
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(restTemplate.exchange(url("/books/batch"),
+                HttpMethod.POST, new HttpEntity<>(ndjson.toString(), headers), String.class)));
+
+        // Statements scale with JDBC batches, not with the number of books.
+        assertWithin(count, 4, 0);
+    }
+
+    @Test
+    public void registerAndGetBorrower() {
+        QueryCounter.Count register = queryCounter.measure(this::addBorrower);
+        Long borrowerId = addBorrower();
+
+        QueryCounter.Count cached = queryCounter.measure(() -> assertOk(get("/borrower/" + borrowerId)));
+        evictCaches();
+        QueryCounter.Count cold = queryCounter.measure(() -> assertOk(get("/borrower/" + borrowerId)));
+
+        assertWithin(register, 1, 0);
+        assertWithin(cached, 0, 0);
+        assertWithin(cold, 2, 1);
+    }
+
+    @Test
+    public void getStats() {
+        Long bookId = addBook(newIsbn());
+        assertOk(exchange(HttpMethod.POST, "/books/" + bookId + "/borrow/" + addBorrower()));
+
+        QueryCounter.Count count = queryCounter.measure(() -> {
+            assertOk(get("/stats"));
+            assertOk(get("/stats/popular?limit=10"));
+        });
+
+        assertWithin(count, 0, 0);
+    }
+
+    @Test
+    public void removeBorrower() {
+        Long borrowerId = addBorrower();
+
+        QueryCounter.Count count = queryCounter.measure(() -> assertOk(exchange(HttpMethod.DELETE, "/borrower/" + borrowerId)));
+
+        assertWithin(count, 4, 1);
+    }
+
+    private static void assertWithin(QueryCounter.Count count, long maxStatements, long maxRows) {
+        assertThat(count.statements()).as("SQL statements").isLessThanOrEqualTo(maxStatements);
+        assertThat(count.rows()).as("rows fetched").isLessThanOrEqualTo(maxRows);
+    }
+
+    // Drops the request-level cache and the Hibernate second-level and query caches, so the next read queries.
+    private void evictCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        entityManagerFactory.getCache().evictAll();
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegions();
+    }
+
+    private static String newIsbn() {
+        return String.format("444%07d", ISBNS.incrementAndGet());
+    }
+
+    private Long addBook(String isbn) {
+        Book book = new Book();
+        book.setTitle("Guarded Title " + isbn);
+        book.setAuthor("Guard Author");
+        book.setIsbn(isbn);
+        ResponseEntity<ApiResponse<Book>> response = restTemplate.exchange(url("/books"), HttpMethod.POST,
+                new HttpEntity<>(book), new ParameterizedTypeReference<ApiResponse<Book>>() {});
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        return response.getBody().getData().getId();
+    }
+
+    private Long addBorrower() {
+        Borrower borrower = new Borrower();
+        borrower.setName("Guarded Reader");
+        borrower.setEmailAddress("guarded@example.com");
+        ResponseEntity<ApiResponse<Borrower>> response = restTemplate.exchange(url("/borrower"), HttpMethod.POST,
+                new HttpEntity<>(borrower), new ParameterizedTypeReference<ApiResponse<Borrower>>() {});
+        assertOk(response);
+        return response.getBody().getData().getId();
+    }
+
+    private ResponseEntity<String> get(String path) {
+        return restTemplate.getForEntity(url(path), String.class);
+    }
+
+    private ResponseEntity<String> exchange(HttpMethod method, String path) {
+        return restTemplate.exchange(url(path), method, null, String.class);
+    }
+
+    private static void assertOk(ResponseEntity<?> response) {
+        assertThat(response.getStatusCode().is2xxSuccessful()).as("status %s", response.getStatusCode()).isTrue();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + port + path;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.h2;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import java.util.Arrays;
+
+// Measures the SQL work done while a block runs, from Hibernate statistics. Statements are JDBC statements
+// prepared (a JDBC batch counts once); rows are entities fetched by id plus rows returned by queries.
+// The counters are global, so measured blocks must not overlap with other database activity.
+public class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.statistics.setStatisticsEnabled(true);
+    }
+
+    public record Count(long statements, long rows) {}
+
+    public Count measure(Runnable block) {
+        long statements = statistics.getPrepareStatementCount();
+        long rows = rowsFetched();
+        block.run();
+        return new Count(statistics.getPrepareStatementCount() - statements, rowsFetched() - rows);
+    }
+
+    private long rowsFetched() {
+        return statistics.getEntityFetchCount()
+                + statistics.getCollectionFetchCount()
+                + Arrays.stream(statistics.getQueries())
+                        .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionRowCount())
+                        .sum();
+    }
+}